@@ -1,25 +1,48 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.Scanner;
+import com.g1rix.javalearning.util.BatchRunner;
 import model.*;
+import service.AlertRule;
+import service.BudgetAlertEngine;
+import service.ExpenseCursor;
+import service.ExpenseImporter;
+import service.ExpenseQuery;
 import service.ExpenseService;
+import service.ImportResult;
+import util.ExpenseJournal;
 import util.FileUtil;
 import exception.InvalidExpenseException;
 
 public class MainApp {
 
+    private static final int PAGE_SIZE = 20;
+    // Months older than this are moved into the compressed archive at startup.
+    private static final int ARCHIVE_AFTER_MONTHS = Integer.getInteger("expense.archiveAfterMonths", 12);
+
+    /**
+     * {@code java MainApp} runs the menu; {@code java MainApp --batch <script|-> [name]}
+     * runs a command script instead (see {@link #runBatch}).
+     */
     public static void main(String[] args) {
 
+        if (args.length >= 2 && args[0].equals("--batch")) {
+            runBatch(args[1], args.length > 2 ? args[2] : "batch");
+            return;
+        }
+
         Scanner sc = new Scanner(System.in);
         ExpenseService service = new ExpenseService();
 
         System.out.print("Enter your name: ");
         User user = new User(sc.nextLine());
 
-        Object[] data = FileUtil.loadData();
-        if (data != null) {
-            service.setExpenses((java.util.ArrayList<Expense>) data[0]);
-            user = (User) data[1];
-            System.out.println("Previous data loaded.");
-        }
+        ExpenseJournal journal = FileUtil.openJournal();
+        user = open(service, journal, user);
+        BudgetAlertEngine alerts = startAlerts(service, user);
 
         while (true) {
             System.out.println("\n1. Add Food Expense");
@@ -27,7 +50,11 @@ public class MainApp {
             System.out.println("3. View Expenses");
             System.out.println("4. Set Budget");
             System.out.println("5. View Total");
-            System.out.println("6. Exit");
+            System.out.println("6. Month Summary");
+            System.out.println("7. Import from CSV");
+            System.out.println("8. Export to CSV");
+            System.out.println("9. Spending Percentiles");
+            System.out.println("10. Exit");
 
             int choice = safeInt(sc);
 
@@ -35,21 +62,23 @@ public class MainApp {
                 switch (choice) {
                     case 1:
                         addExpense(sc, service, "Food");
+                        FileUtil.checkpointIfDue(service, user, journal);
                         service.checkBudget(user);
                         break;
 
                     case 2:
                         addExpense(sc, service, "Travel");
+                        FileUtil.checkpointIfDue(service, user, journal);
                         service.checkBudget(user);
                         break;
 
                     case 3:
-                        service.viewExpenses();
+                        viewExpenses(sc, service);
                         break;
 
                     case 4:
                         System.out.print("Enter monthly budget: ");
-                        user.setMonthlyBudget(safeDouble(sc));
+                        service.setBudget(user, safeDouble(sc));
                         break;
 
                     case 5:
@@ -57,7 +86,24 @@ public class MainApp {
                         break;
 
                     case 6:
-                        FileUtil.saveData(service.getExpenses(), user);
+                        System.out.print("Enter month (yyyy-mm): ");
+                        System.out.println(service.monthSummary(parseMonth(sc.next())));
+                        break;
+
+                    case 7:
+                        importExpenses(sc, service, user, journal);
+                        break;
+
+                    case 8:
+                        exportExpenses(sc, service);
+                        break;
+
+                    case 9:
+                        printPercentiles(service, null);
+                        break;
+
+                    case 10:
+                        close(service, user, journal, alerts);
                         System.out.println("Data saved. Bye!");
                         sc.close();
                         return;
@@ -71,6 +117,98 @@ public class MainApp {
         }
     }
 
+    /**
+     * Runs one command per line from {@code script} (a file, or "-" for
+     * stdin) against the data of user {@code name}, without prompts:
+     *
+     * <pre>
+     * add Food 250.50 2026-10-18     add &lt;Food|Travel&gt; &lt;amount&gt; [date|today]
+     * view 2                         one page, or every expense without a page
+     * budget 20000
+     * total
+     * summary 2026-10
+     * percentiles Food               p50/p90/p99 of one category, or of each
+     * import statement.csv
+     * export expenses.csv
+     * save                           checkpoint now; done anyway at the end
+     * </pre>
+     */
+    private static void runBatch(String script, String name) {
+        ExpenseService service = new ExpenseService();
+        ExpenseJournal journal = FileUtil.openJournal();
+        User user = open(service, journal, new User(name));
+        BudgetAlertEngine alerts = startAlerts(service, user);
+
+        BatchRunner runner = new BatchRunner()
+                .command("add", "<Food|Travel> <amount> [yyyy-mm-dd|today]", 2, 3, a -> {
+                    Expense expense = newExpense(a[0], Double.parseDouble(a[1]),
+                            parseDate(a.length > 2 ? a[2] : "today"));
+                    service.addExpense(expense);
+                    FileUtil.checkpointIfDue(service, user, journal);
+                    service.checkBudget(user);
+                })
+                .command("view", "[page]", 0, 1, a -> {
+                    if (a.length == 0)
+                        service.viewExpenses();
+                    else
+                        service.viewExpenses(service.query(new ExpenseQuery()),
+                                Integer.parseInt(a[0]) - 1, PAGE_SIZE);
+                })
+                .command("budget", "<amount>", 1, 1,
+                        a -> service.setBudget(user, Double.parseDouble(a[0])))
+                .command("total", "", 0, 0,
+                        a -> System.out.println("Total: ₹" + service.getTotalExpense()))
+                .command("summary", "<yyyy-mm>", 1, 1,
+                        a -> System.out.println(service.monthSummary(parseMonth(a[0]))))
+                .command("percentiles", "[Food|Travel]", 0, 1,
+                        a -> printPercentiles(service, a.length > 0 ? a[0] : null))
+                .command("import", "<file>", 1, 1, a -> importExpenses(a[0], service, user, journal))
+                .command("export", "<file>", 1, 1, a -> exportExpenses(a[0], service))
+                .command("save", "", 0, 0, a -> FileUtil.checkpoint(service, user, journal));
+
+        try {
+            runner.run(script);
+        } catch (IOException e) {
+            System.out.println("Error reading script.");
+        }
+        close(service, user, journal, alerts);
+    }
+
+    // Loads saved data and archives closed months; returns the user to continue with.
+    private static User open(ExpenseService service, ExpenseJournal journal, User user) {
+        service.setJournal(journal);
+
+        User loaded = FileUtil.loadData(service, journal, user);
+        if (loaded != null) {
+            user = loaded;
+            System.out.println("Previous data loaded.");
+        }
+
+        int archived = service.archiveBefore(YearMonth.now().minusMonths(ARCHIVE_AFTER_MONTHS));
+        if (archived > 0) {
+            FileUtil.checkpoint(service, user, journal);
+            System.out.println(archived + " expenses from closed months archived.");
+        }
+        return user;
+    }
+
+    private static BudgetAlertEngine startAlerts(ExpenseService service, User user) {
+        BudgetAlertEngine alerts = new BudgetAlertEngine();
+        alerts.addRule(AlertRule.budgetPercent(80));
+        alerts.addRule(AlertRule.burnRate(null, 3, 30));
+        alerts.subscribe(alert -> System.out.println("\n" + alert));
+        service.setAlerts(alerts, user);
+        return alerts;
+    }
+
+    private static void close(ExpenseService service, User user, ExpenseJournal journal,
+                              BudgetAlertEngine alerts) {
+        FileUtil.checkpoint(service, user, journal);
+        if (journal != null)
+            journal.close();
+        alerts.close();
+    }
+
     private static void addExpense(Scanner sc, ExpenseService service, String type)
             throws InvalidExpenseException {
 
@@ -80,14 +218,105 @@ public class MainApp {
         if (amount <= 0)
             throw new InvalidExpenseException("Amount must be positive");
 
-        Expense expense = type.equals("Food")
-                ? new FoodExpense(amount, "Today")
-                : new TravelExpense(amount, "Today");
+        System.out.print("Enter date (yyyy-mm-dd, or 'today'): ");
+        LocalDate date = parseDate(sc.next());
 
-        service.addExpense(expense);
+        service.addExpense(newExpense(type, amount, date));
         System.out.println("Expense added.");
     }
 
+    private static Expense newExpense(String type, double amount, LocalDate date)
+            throws InvalidExpenseException {
+        if (!(amount > 0))
+            throw new InvalidExpenseException("Amount must be positive");
+        if (!Expense.isCategory(type))
+            throw new InvalidExpenseException("Unknown category '" + type + "'");
+
+        return type.equals("Food")
+                ? new FoodExpense(amount, date)
+                : new TravelExpense(amount, date);
+    }
+
+    private static LocalDate parseDate(String input) throws InvalidExpenseException {
+        try {
+            return input.equalsIgnoreCase("today") ? LocalDate.now() : LocalDate.parse(input);
+        } catch (DateTimeParseException e) {
+            throw new InvalidExpenseException("Date must be in yyyy-mm-dd format");
+        }
+    }
+
+    private static YearMonth parseMonth(String input) throws InvalidExpenseException {
+        try {
+            return YearMonth.parse(input);
+        } catch (DateTimeParseException e) {
+            throw new InvalidExpenseException("Month must be in yyyy-mm format");
+        }
+    }
+
+    // p50/p90/p99 of one category, or of each category and overall
+    private static void printPercentiles(ExpenseService service, String category)
+            throws InvalidExpenseException {
+        if (category != null && !Expense.isCategory(category))
+            throw new InvalidExpenseException("Unknown category '" + category + "'");
+        String[] categories = category != null ? new String[] { category }
+                : new String[] { "Food", "Travel", null };
+        System.out.printf("%-8s %12s %12s %12s%n", "", "p50", "p90", "p99");
+        for (String c : categories) {
+            System.out.printf("%-8s %12.2f %12.2f %12.2f%n", c == null ? "All" : c,
+                    service.getPercentile(c, 0.5), service.getPercentile(c, 0.9),
+                    service.getPercentile(c, 0.99));
+        }
+    }
+
+    private static void viewExpenses(Scanner sc, ExpenseService service) {
+        ExpenseCursor cursor = service.query(new ExpenseQuery());
+        int page = 0;
+        while (service.viewExpenses(cursor, page, PAGE_SIZE)) {
+            System.out.print("Next page? (y/n): ");
+            if (!sc.next().equalsIgnoreCase("y"))
+                break;
+            page++;
+        }
+    }
+
+    private static void exportExpenses(Scanner sc, ExpenseService service) {
+        System.out.print("Enter CSV file path: ");
+        exportExpenses(sc.next(), service);
+    }
+
+    private static void exportExpenses(String path, ExpenseService service) {
+        try {
+            int rows = service.exportCsv(new ExpenseQuery().sortBy(ExpenseQuery.Sort.DATE_ASC),
+                    Paths.get(path));
+            System.out.println(rows + " expenses exported.");
+        } catch (IOException e) {
+            System.out.println("Error exporting file.");
+        }
+    }
+
+    private static void importExpenses(Scanner sc, ExpenseService service, User user,
+                                       ExpenseJournal journal) {
+        System.out.print("Enter CSV file path (date,category,amount): ");
+        importExpenses(sc.next(), service, user, journal);
+    }
+
+    private static void importExpenses(String path, ExpenseService service, User user,
+                                       ExpenseJournal journal) {
+        try {
+            ImportResult result = new ExpenseImporter(service).importFile(Paths.get(path));
+            for (InvalidExpenseException e : result.getErrors()) {
+                System.out.println(e.getMessage());
+            }
+            System.out.println(result);
+            if (result.getImported() > 0) {
+                FileUtil.checkpoint(service, user, journal);
+                service.checkBudget(user);
+            }
+        } catch (IOException e) {
+            System.out.println("Error importing file.");
+        }
+    }
+
     private static int safeInt(Scanner sc) {
         while (!sc.hasNextInt()) {
             sc.next();
@@ -0,0 +1,34 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark in this package with the GC profiler and writes the
+ * results as CSV for {@link CompareResults}.
+ *
+ * {@code java benchmark.BenchmarkMain [result.csv] [size ...]}
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+        String result = args.length > 0 ? args[0] : "jmh-result.csv";
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include("benchmark\\..*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.CSV)
+                .result(result);
+        if (args.length > 1) {
+            String[] sizes = new String[args.length - 1];
+            System.arraycopy(args, 1, sizes, 0, sizes.length);
+            options.param("size", sizes);
+        }
+
+        new Runner(options.build()).run();
+    }
+}
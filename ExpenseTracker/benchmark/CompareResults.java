@@ -0,0 +1,125 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH CSV result files and exits with status 1 if any score got
+ * worse by more than the threshold, so it can gate a build.
+ *
+ * {@code java benchmark.CompareResults <baseline.csv> <current.csv> [thresholdPercent]}
+ *
+ * Throughput scores are better when higher; times and GC allocation figures
+ * are better when lower.
+ */
+public class CompareResults {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java benchmark.CompareResults <baseline.csv> <current.csv> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+        Map<String, Score> baseline = read(args[0]);
+        Map<String, Score> current = read(args[1]);
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> e : current.entrySet()) {
+            Score before = baseline.get(e.getKey());
+            Score after = e.getValue();
+            if (before == null || before.value == 0) {
+                System.out.printf("  new   %s: %.3f %s%n", e.getKey(), after.value, after.unit);
+                continue;
+            }
+
+            double change = (after.value - before.value) / before.value * 100;
+            double worse = after.higherIsBetter() ? -change : change;
+            String mark = worse > threshold ? "WORSE" : worse < -threshold ? "better" : "same";
+            if (worse > threshold)
+                regressions++;
+            System.out.printf("%6s %s: %.3f -> %.3f %s (%+.1f%%)%n",
+                    mark, e.getKey(), before.value, after.value, after.unit, change);
+        }
+
+        System.out.println(regressions + " regression(s) beyond " + threshold + "%");
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    private static Map<String, Score> read(String file) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        Map<String, Score> scores = new LinkedHashMap<>();
+        if (lines.isEmpty())
+            return scores;
+
+        List<String> header = split(lines.get(0));
+        int name = header.indexOf("Benchmark");
+        int mode = header.indexOf("Mode");
+        int score = header.indexOf("Score");
+        int unit = header.indexOf("Unit");
+
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> cols = split(line);
+            if (cols.size() < header.size())
+                continue;
+            StringBuilder key = new StringBuilder(cols.get(name));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: "))
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(cols.get(i));
+            }
+            try {
+                scores.put(key.toString(), new Score(cols.get(name), cols.get(mode),
+                        Double.parseDouble(cols.get(score)), cols.get(unit)));
+            } catch (NumberFormatException e) {
+                // NaN rows from profilers that had nothing to report
+            }
+        }
+        return scores;
+    }
+
+    private static List<String> split(String line) {
+        List<String> cols = new ArrayList<>();
+        StringBuilder col = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                cols.add(col.toString());
+                col.setLength(0);
+            } else {
+                col.append(c);
+            }
+        }
+        cols.add(col.toString());
+        return cols;
+    }
+
+    private static final class Score {
+        final String name;
+        final String mode;
+        final double value;
+        final String unit;
+
+        Score(String name, String mode, double value, String unit) {
+            this.name = name;
+            this.mode = mode;
+            this.value = value;
+            this.unit = unit;
+        }
+
+        boolean higherIsBetter() {
+            // secondary profiler rows (":gc.alloc.rate.norm" etc.) are costs
+            return mode.equals("thrpt") && !name.contains(":");
+        }
+    }
+}
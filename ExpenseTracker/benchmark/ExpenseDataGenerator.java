@@ -0,0 +1,111 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import model.Expense;
+import service.ExpenseBatch;
+import service.ExpenseService;
+
+/**
+ * Repeatable synthetic expenses for benchmarks: the same seed and count
+ * always give the same data. Dates run forward from {@link #START} a few
+ * expenses per day, so histories of millions of rows span several years.
+ *
+ * Run directly to write a CSV for the importer:
+ * {@code java benchmark.ExpenseDataGenerator <count> <file> [seed]}
+ */
+public class ExpenseDataGenerator {
+
+    public static final long DEFAULT_SEED = 42;
+    public static final LocalDate START = LocalDate.of(2015, 1, 1);
+
+    private static final String[] CATEGORIES = {"Food", "Travel"};
+    private static final int EXPENSES_PER_DAY = 8;
+
+    private final Random random;
+    private long generated;
+
+    public ExpenseDataGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public String nextCategory() {
+        return CATEGORIES[random.nextInt(CATEGORIES.length)];
+    }
+
+    /** Between 1.00 and 5000.00, in cents, skewed towards small amounts. */
+    public long nextAmountCents() {
+        double r = random.nextDouble();
+        return 100 + (long) (r * r * 499_900);
+    }
+
+    public int nextEpochDay() {
+        int day = (int) (START.toEpochDay() + generated / EXPENSES_PER_DAY);
+        generated++;
+        return day;
+    }
+
+    public Expense nextExpense() {
+        String category = nextCategory();
+        long cents = nextAmountCents();
+        return Expense.of(category, cents / 100.0, LocalDate.ofEpochDay(nextEpochDay()));
+    }
+
+    public List<Expense> expenses(int count) {
+        List<Expense> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            list.add(nextExpense());
+        return list;
+    }
+
+    /** Fills {@code service} with {@code count} expenses without building objects. */
+    public void fill(ExpenseService service, int count) {
+        ExpenseBatch batch = new ExpenseBatch(Math.min(count, 1 << 16));
+        for (int i = 0; i < count; i++) {
+            String category = nextCategory();
+            long cents = nextAmountCents();
+            batch.add(category, cents, nextEpochDay());
+            if (batch.size() == 1 << 16) {
+                service.addBatch(batch);
+                batch.clear();
+            }
+        }
+        service.addBatch(batch);
+    }
+
+    public static ExpenseService service(int count) {
+        ExpenseService service = new ExpenseService();
+        new ExpenseDataGenerator(DEFAULT_SEED).fill(service, count);
+        return service;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java benchmark.ExpenseDataGenerator <count> <file> [seed]");
+            return;
+        }
+        long count = Long.parseLong(args[0]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        ExpenseDataGenerator generator = new ExpenseDataGenerator(seed);
+
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            out.write("date,category,amount");
+            out.newLine();
+            for (long i = 0; i < count; i++) {
+                String category = generator.nextCategory();
+                long cents = generator.nextAmountCents();
+                out.write(LocalDate.ofEpochDay(generator.nextEpochDay()) + "," + category + ","
+                        + cents / 100 + "." + (cents % 100 < 10 ? "0" : "") + cents % 100);
+                out.newLine();
+            }
+        }
+        System.out.println(count + " expenses written to " + args[1]);
+    }
+}
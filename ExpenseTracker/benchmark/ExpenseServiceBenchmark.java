@@ -0,0 +1,69 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import model.Expense;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import service.ExpenseService;
+
+/**
+ * addExpense throughput and getTotalExpense / checkBudget latency at
+ * several history sizes.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ExpenseServiceBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int size;
+
+    private ExpenseService service;
+    private User user;
+    private ExpenseDataGenerator generator;
+
+    // Rebuilt every iteration so adds measured at size n stay near size n.
+    @Setup(Level.Iteration)
+    public void setUp() {
+        service = ExpenseDataGenerator.service(size);
+        generator = new ExpenseDataGenerator(ExpenseDataGenerator.DEFAULT_SEED + 1);
+        user = new User("benchmark");
+        // never exceeded, so checkBudget does not print
+        user.setMonthlyBudget(Double.MAX_VALUE);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void addExpense() {
+        Expense expense = generator.nextExpense();
+        service.addExpense(expense);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public double getTotalExpense() {
+        return service.getTotalExpense();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public User checkBudget() {
+        service.checkBudget(user);
+        return user;
+    }
+}
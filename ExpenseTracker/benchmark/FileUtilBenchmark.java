@@ -0,0 +1,77 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import service.ExpenseService;
+import util.FileUtil;
+
+/**
+ * Time per FileUtil.saveData / loadData call. Each call is one
+ * measurement, since a single save of a large history takes seconds.
+ * Files go to a temporary directory, never to expense_data.snap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class FileUtilBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int size;
+
+    private File dir;
+    private String saveFile;
+    private String loadFile;
+    private ExpenseService service;
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("expense-bench").toFile();
+        saveFile = new File(dir, "save.snap").getPath();
+        loadFile = new File(dir, "load.snap").getPath();
+        service = ExpenseDataGenerator.service(size);
+        user = new User("benchmark");
+        FileUtil.saveData(loadFile, service, user, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files)
+                f.delete();
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public boolean saveData() {
+        return FileUtil.saveData(saveFile, service, user, 0);
+    }
+
+    @Benchmark
+    public ExpenseService loadData() {
+        ExpenseService loaded = new ExpenseService();
+        FileUtil.loadData(loadFile, loaded, null, new User("benchmark"));
+        return loaded;
+    }
+}
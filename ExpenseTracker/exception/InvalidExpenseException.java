@@ -2,7 +2,20 @@ package exception;
 
 public class InvalidExpenseException extends Exception {
 
+    private final long line;
+
     public InvalidExpenseException(String message) {
         super(message);
+        this.line = -1;
+    }
+
+    public InvalidExpenseException(long line, String message) {
+        super("Line " + line + ": " + message);
+        this.line = line;
+    }
+
+    /** Input line the problem was found on, or -1 if not from a file. */
+    public long getLine() {
+        return line;
     }
 }
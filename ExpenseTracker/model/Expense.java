@@ -1,14 +1,30 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 
 public abstract class Expense implements Serializable {
 
+    private static final long serialVersionUID = -3595863160070707954L;
+
+    // The date is still written as text so files saved before it became a
+    // LocalDate keep loading.
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("amount", double.class),
+            new ObjectStreamField("category", String.class),
+            new ObjectStreamField("date", String.class)
+    };
+
     protected double amount;
     protected String category;
-    protected String date;
+    protected LocalDate date;
 
-    public Expense(double amount, String category, String date) {
+    public Expense(double amount, String category, LocalDate date) {
         this.amount = amount;
         this.category = category;
         this.date = date;
@@ -22,12 +38,51 @@ public abstract class Expense implements Serializable {
         return category;
     }
 
-    public String getDate() {
+    public LocalDate getDate() {
         return date;
     }
 
     public abstract double calculateExpense();
 
+    public static boolean isCategory(String category) {
+        return "Food".equals(category) || "Travel".equals(category);
+    }
+
+    public static Expense of(String category, double amount, LocalDate date) {
+        if ("Food".equals(category))
+            return new FoodExpense(amount, date);
+        if ("Travel".equals(category))
+            return new TravelExpense(amount, date);
+        throw new IllegalArgumentException("Unknown category: " + category);
+    }
+
+    /**
+     * Parses an ISO date. Older data recorded every expense as "Today"; such
+     * values map to the current date.
+     */
+    public static LocalDate parseDate(String date) {
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException | NullPointerException e) {
+            return LocalDate.now();
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("amount", amount);
+        fields.put("category", category);
+        fields.put("date", date.toString());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        amount = fields.get("amount", 0.0);
+        category = (String) fields.get("category", null);
+        date = parseDate((String) fields.get("date", null));
+    }
+
     @Override
     public String toString() {
         return date + " | " + category + " | ₹" + amount;
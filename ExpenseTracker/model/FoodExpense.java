@@ -1,8 +1,12 @@
 package model;
 
+import java.time.LocalDate;
+
 public class FoodExpense extends Expense {
 
-    public FoodExpense(double amount, String date) {
+    private static final long serialVersionUID = -6008774457848405640L;
+
+    public FoodExpense(double amount, LocalDate date) {
         super(amount, "Food", date);
     }
 
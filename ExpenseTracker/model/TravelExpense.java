@@ -1,8 +1,12 @@
 package model;
 
+import java.time.LocalDate;
+
 public class TravelExpense extends Expense {
 
-    public TravelExpense(double amount, String date) {
+    private static final long serialVersionUID = -8132223685333293983L;
+
+    public TravelExpense(double amount, LocalDate date) {
         super(amount, "Travel", date);
     }
 
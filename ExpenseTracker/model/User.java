@@ -4,6 +4,8 @@ import java.io.Serializable;
 
 public class User implements Serializable {
 
+    private static final long serialVersionUID = 3158039120882336536L;
+
     private String name;
     private double monthlyBudget;
 
@@ -11,6 +13,10 @@ public class User implements Serializable {
         this.name = name;
     }
 
+    public String getName() {
+        return name;
+    }
+
     public double getMonthlyBudget() {
         return monthlyBudget;
     }
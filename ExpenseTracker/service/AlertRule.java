@@ -0,0 +1,99 @@
+package service;
+
+/**
+ * A budget alert condition evaluated by {@link BudgetAlertEngine}. Rules are
+ * values: two rules with the same kind, category, threshold and window are
+ * equal, which is what {@link BudgetAlertEngine#removeRule} matches on.
+ */
+public final class AlertRule {
+
+    public enum Kind {
+        /** A category's spending in a month goes over a fixed amount. */
+        CATEGORY_BUDGET,
+        /** Total spending in a month reaches a percentage of the user's budget. */
+        BUDGET_PERCENT,
+        /** A day's spending is some multiple of the average over the days before it. */
+        BURN_RATE
+    }
+
+    private final Kind kind;
+    private final String category;
+    private final double threshold;
+    private final int days;
+
+    private AlertRule(Kind kind, String category, double threshold, int days) {
+        this.kind = kind;
+        this.category = category;
+        this.threshold = threshold;
+        this.days = days;
+    }
+
+    public static AlertRule categoryBudget(String category, double monthlyLimit) {
+        if (category == null)
+            throw new IllegalArgumentException("Category is required");
+        return new AlertRule(Kind.CATEGORY_BUDGET, category, monthlyLimit, 0);
+    }
+
+    public static AlertRule budgetPercent(double percent) {
+        return new AlertRule(Kind.BUDGET_PERCENT, null, percent, 0);
+    }
+
+    /**
+     * @param category the category to watch, or null for all spending
+     * @param factor   how many times the average a day must reach
+     * @param days     number of preceding days the average is taken over
+     */
+    public static AlertRule burnRate(String category, double factor, int days) {
+        if (days <= 0)
+            throw new IllegalArgumentException("Days must be positive");
+        return new AlertRule(Kind.BURN_RATE, category, factor, days);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** The watched category, or null when the rule covers all spending. */
+    public String getCategory() {
+        return category;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof AlertRule))
+            return false;
+        AlertRule r = (AlertRule) o;
+        return kind == r.kind && days == r.days
+                && Double.compare(threshold, r.threshold) == 0
+                && (category == null ? r.category == null : category.equals(r.category));
+    }
+
+    @Override
+    public int hashCode() {
+        int h = kind.hashCode();
+        h = h * 31 + (category == null ? 0 : category.hashCode());
+        h = h * 31 + Double.hashCode(threshold);
+        return h * 31 + days;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case CATEGORY_BUDGET:
+                return category + " over ₹" + threshold + " a month";
+            case BUDGET_PERCENT:
+                return threshold + "% of monthly budget";
+            default:
+                return (category == null ? "Spending" : category) + " at " + threshold
+                        + "x the " + days + "-day average";
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One closed month of expenses in compressed form, with a summary of its
+ * totals that can be read without decompressing anything.
+ *
+ * Expenses are stored in date order, each as three varints: days since the
+ * previous expense (the first counts from the 1st of the month), an index
+ * into the block's category dictionary and the amount in cents, zigzag
+ * encoded. A typical expense takes three to five bytes.
+ */
+public class ArchiveBlock {
+
+    private final YearMonth month;
+    private final int count;
+    private final long totalCents;
+    private final String[] categories;
+    private final long[] categoryCents;
+    private final int[] categoryCounts;
+    private final byte[] data;
+
+    private ArchiveBlock(YearMonth month, int count, long totalCents, String[] categories,
+                         long[] categoryCents, int[] categoryCounts, byte[] data) {
+        this.month = month;
+        this.count = count;
+        this.totalCents = totalCents;
+        this.categories = categories;
+        this.categoryCents = categoryCents;
+        this.categoryCounts = categoryCounts;
+        this.data = data;
+    }
+
+    /** Compresses rows {@code from} to {@code to} of {@code batch}, which must be in date order. */
+    static ArchiveBlock encode(YearMonth month, ExpenseBatch batch, int from, int to) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        List<long[]> perCategory = new ArrayList<>();
+        ByteBuffer out = ByteBuffer.allocate(Math.max(16, (to - from) * 20));
+        long total = 0;
+        int previousDay = (int) month.atDay(1).toEpochDay();
+
+        for (int i = from; i < to; i++) {
+            Integer id = ids.get(batch.category(i));
+            if (id == null) {
+                id = ids.size();
+                ids.put(batch.category(i), id);
+                perCategory.add(new long[2]);
+            }
+            long cents = batch.amountCents(i);
+            putVarint(out, batch.epochDay(i) - previousDay);
+            putVarint(out, id);
+            putVarint(out, (cents << 1) ^ (cents >> 63));
+            previousDay = batch.epochDay(i);
+
+            total += cents;
+            perCategory.get(id)[0] += cents;
+            perCategory.get(id)[1]++;
+        }
+
+        int n = ids.size();
+        long[] categoryCents = new long[n];
+        int[] categoryCounts = new int[n];
+        for (int c = 0; c < n; c++) {
+            categoryCents[c] = perCategory.get(c)[0];
+            categoryCounts[c] = (int) perCategory.get(c)[1];
+        }
+        return new ArchiveBlock(month, to - from, total, ids.keySet().toArray(new String[0]),
+                categoryCents, categoryCounts, Arrays.copyOf(out.array(), out.position()));
+    }
+
+    /** Decompresses the block into date-ordered columns. */
+    ExpenseBatch decode() {
+        ExpenseBatch batch = new ExpenseBatch(count);
+        ByteBuffer in = ByteBuffer.wrap(data);
+        int day = (int) month.atDay(1).toEpochDay();
+        for (int i = 0; i < count; i++) {
+            day += (int) getVarint(in);
+            String category = categories[(int) getVarint(in)];
+            long zigzag = getVarint(in);
+            batch.add(category, (zigzag >>> 1) ^ -(zigzag & 1), day);
+        }
+        return batch;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    public long getTotalCents(String category) {
+        for (int c = 0; c < categories.length; c++) {
+            if (categories[c].equals(category))
+                return categoryCents[c];
+        }
+        return 0;
+    }
+
+    public int getCount(String category) {
+        for (int c = 0; c < categories.length; c++) {
+            if (categories[c].equals(category))
+                return categoryCounts[c];
+        }
+        return 0;
+    }
+
+    /** Compressed size in bytes, excluding the summary. */
+    public int getDataSize() {
+        return data.length;
+    }
+
+    public MonthSummary summary() {
+        Map<String, Long> byCategory = new LinkedHashMap<>();
+        for (int c = 0; c < categories.length; c++)
+            byCategory.put(categories[c], categoryCents[c]);
+        return new MonthSummary(month, count, totalCents, byCategory);
+    }
+
+    int encodedSize() {
+        int size = 4 + 4 + 8 + 2 + 4 + data.length;
+        for (String c : categories)
+            size += 2 + c.getBytes(StandardCharsets.UTF_8).length + 8 + 4;
+        return size;
+    }
+
+    void write(ByteBuffer out) {
+        out.putInt(month.getYear() * 12 + month.getMonthValue() - 1);
+        out.putInt(count);
+        out.putLong(totalCents);
+        out.putShort((short) categories.length);
+        for (int c = 0; c < categories.length; c++) {
+            byte[] name = categories[c].getBytes(StandardCharsets.UTF_8);
+            out.putShort((short) name.length);
+            out.put(name);
+            out.putLong(categoryCents[c]);
+            out.putInt(categoryCounts[c]);
+        }
+        out.putInt(data.length);
+        out.put(data);
+    }
+
+    static ArchiveBlock read(ByteBuffer in) {
+        int monthKey = in.getInt();
+        int count = in.getInt();
+        long totalCents = in.getLong();
+        int n = in.getShort() & 0xFFFF;
+        String[] categories = new String[n];
+        long[] categoryCents = new long[n];
+        int[] categoryCounts = new int[n];
+        for (int c = 0; c < n; c++) {
+            byte[] name = new byte[in.getShort() & 0xFFFF];
+            in.get(name);
+            categories[c] = new String(name, StandardCharsets.UTF_8);
+            categoryCents[c] = in.getLong();
+            categoryCounts[c] = in.getInt();
+        }
+        byte[] data = new byte[in.getInt()];
+        in.get(data);
+        return new ArchiveBlock(YearMonth.of(monthKey / 12, monthKey % 12 + 1), count, totalCents,
+                categories, categoryCents, categoryCounts, data);
+    }
+
+    private static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long getVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+}
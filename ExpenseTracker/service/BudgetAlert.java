@@ -0,0 +1,45 @@
+package service;
+
+import java.time.LocalDate;
+
+/** One triggered {@link AlertRule}, as delivered to subscribers. */
+public class BudgetAlert {
+
+    private final AlertRule rule;
+    private final LocalDate date;
+    private final double value;
+    private final String message;
+
+    public BudgetAlert(AlertRule rule, LocalDate date, double value, String message) {
+        this.rule = rule;
+        this.date = date;
+        this.value = value;
+        this.message = message;
+    }
+
+    public AlertRule getRule() {
+        return rule;
+    }
+
+    /** Date of the expense that triggered the alert. */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * The measured value the threshold was crossed by: an amount for
+     * category budgets, a percentage or a multiple of the average otherwise.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
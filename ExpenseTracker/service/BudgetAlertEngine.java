@@ -0,0 +1,365 @@
+package service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Evaluates {@link AlertRule}s as expenses arrive and delivers the resulting
+ * {@link BudgetAlert}s to subscribers.
+ *
+ * Every call only queues work for a single engine thread, so adding an
+ * expense never waits for rules or subscribers. That thread keeps its own
+ * running month and day totals per category and overall, and groups the
+ * rules that compare the same measure (for example all category budgets for
+ * Food) into a ladder sorted by threshold. An expense then costs one update
+ * per ladder: the ladder remembers the highest threshold already alerted in
+ * each month or day and only walks the thresholds newly crossed, however
+ * many rules it holds. Each rule alerts at most once per month (per day for
+ * burn rates).
+ *
+ * Only the totals a rule can still look at are kept: the month of the
+ * latest expense seen, and its day plus the widest burn-rate window before
+ * it. Older ones are dropped whenever a later day arrives, and expenses
+ * dated before what is kept no longer count towards any rule.
+ */
+public class BudgetAlertEngine {
+
+    private static final String ALL = "";
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "budget-alerts");
+        t.setDaemon(true);
+        return t;
+    });
+    private final List<Consumer<BudgetAlert>> subscribers = new CopyOnWriteArrayList<>();
+
+    // Owned by the engine thread.
+    private final Map<String, Scope> scopes = new HashMap<>();
+    private final Map<AlertRule, Boolean> active = new LinkedHashMap<>();
+    private double budget;
+    private int cachedMonthFirst = 1;
+    private int cachedMonthLast = 0;
+    private int cachedMonthKey;
+    private int currentDay = Integer.MIN_VALUE;
+    private int currentMonth = Integer.MIN_VALUE;
+    private int firstKeptDay = Integer.MIN_VALUE;
+
+    public void subscribe(Consumer<BudgetAlert> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<BudgetAlert> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public void addRule(AlertRule rule) {
+        submit(() -> {
+            if (active.put(rule, Boolean.TRUE) == null)
+                scope(rule.getCategory()).ladder(rule).add(rule);
+        });
+    }
+
+    public void removeRule(AlertRule rule) {
+        submit(() -> {
+            if (active.remove(rule) != null)
+                scope(rule.getCategory()).ladder(rule).remove(rule);
+        });
+    }
+
+    public void setBudget(double monthlyBudget) {
+        submit(() -> budget = monthlyBudget);
+    }
+
+    public void onExpense(String category, long amountCents, int epochDay) {
+        submit(() -> record(category, amountCents, epochDay, true));
+    }
+
+    /** Counts the expense out of the running totals; it never raises alerts. */
+    public void onRemoval(String category, long amountCents, int epochDay) {
+        submit(() -> record(category, -amountCents, epochDay, false));
+    }
+
+    public void onBatch(ExpenseBatch batch) {
+        int n = batch.size();
+        String[] categories = new String[n];
+        long[] cents = new long[n];
+        int[] days = new int[n];
+        for (int i = 0; i < n; i++) {
+            categories[i] = batch.category(i);
+            cents[i] = batch.amountCents(i);
+            days[i] = batch.epochDay(i);
+        }
+        submit(() -> {
+            for (int i = 0; i < n; i++)
+                record(categories[i], cents[i], days[i], true);
+        });
+    }
+
+    /**
+     * Loads the totals of expenses already in {@code store} without alerting
+     * on them, so only thresholds crossed from now on are reported. Reads
+     * the store on the calling thread.
+     */
+    public void seed(ExpenseStore store) {
+        int n = store.size();
+        short[] ids = new short[n];
+        long[] cents = new long[n];
+        int[] days = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = store.categoryId(i);
+            cents[i] = store.amountCents(i);
+            days[i] = store.epochDay(i);
+        }
+        List<String> names = store.categoryNames();
+        submit(() -> {
+            for (int i = 0; i < n; i++)
+                record(names.get(ids[i]), cents[i], days[i], false);
+        });
+    }
+
+    /** Waits until everything queued so far has been evaluated and delivered. */
+    public void flush() throws InterruptedException {
+        try {
+            worker.submit(() -> { }).get();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            // nothing left to wait for
+        }
+    }
+
+    public void close() {
+        worker.shutdown();
+    }
+
+    private void submit(Runnable task) {
+        try {
+            worker.execute(task);
+        } catch (RejectedExecutionException e) {
+            // closed; late events are dropped
+        }
+    }
+
+    private Scope scope(String category) {
+        return scopes.computeIfAbsent(category == null ? ALL : category, k -> new Scope());
+    }
+
+    private void record(String category, long amountCents, int epochDay, boolean alert) {
+        int month = monthKeyOfDay(epochDay);
+        if (epochDay > currentDay) {
+            currentDay = epochDay;
+            currentMonth = Math.max(currentMonth, month);
+            prune();
+        }
+        // a fixed and small number of ladders per expense, whatever the rule count
+        update(scope(null), amountCents, month, epochDay, alert);
+        update(scope(category), amountCents, month, epochDay, alert);
+    }
+
+    private void update(Scope scope, long amountCents, int month, int epochDay, boolean alert) {
+        boolean monthKept = month >= currentMonth;
+        boolean dayKept = epochDay >= firstKeptDay;
+        long monthTotal = monthKept ? add(scope.monthTotals, month, amountCents) : 0;
+        long dayTotal = dayKept ? add(scope.dayTotals, epochDay, amountCents) : 0;
+
+        for (Ladder ladder : scope.ladders.values()) {
+            if (ladder.size == 0 || !(ladder.kind == AlertRule.Kind.BURN_RATE ? dayKept : monthKept))
+                continue;
+            double value;
+            int period;
+            switch (ladder.kind) {
+                case CATEGORY_BUDGET:
+                    value = monthTotal / 100.0;
+                    period = month;
+                    break;
+                case BUDGET_PERCENT:
+                    if (budget <= 0)
+                        continue;
+                    value = monthTotal / budget; // cents over rupees: a percentage
+                    period = month;
+                    break;
+                default:
+                    long window = 0;
+                    for (int d = epochDay - ladder.days; d < epochDay; d++) {
+                        long[] t = scope.dayTotals.get(d);
+                        if (t != null)
+                            window += t[0];
+                    }
+                    if (window <= 0)
+                        continue;
+                    value = (double) dayTotal * ladder.days / window;
+                    period = epochDay;
+                    break;
+            }
+            ladder.cross(period, value, epochDay, alert);
+        }
+    }
+
+    // Drops the months before the current one, and the days before the widest burn-rate window.
+    private void prune() {
+        int widest = 0;
+        for (Scope scope : scopes.values()) {
+            for (Ladder ladder : scope.ladders.values()) {
+                if (ladder.kind == AlertRule.Kind.BURN_RATE)
+                    widest = Math.max(widest, ladder.days);
+            }
+        }
+        int firstDay = currentDay - widest;
+        firstKeptDay = firstDay;
+        for (Scope scope : scopes.values()) {
+            scope.monthTotals.keySet().removeIf(m -> m < currentMonth);
+            scope.dayTotals.keySet().removeIf(d -> d < firstDay);
+            for (Ladder ladder : scope.ladders.values()) {
+                int first = ladder.kind == AlertRule.Kind.BURN_RATE ? firstDay : currentMonth;
+                ladder.alerted.keySet().removeIf(p -> p < first);
+            }
+        }
+    }
+
+    private static long add(Map<Integer, long[]> totals, int key, long amountCents) {
+        long[] t = totals.get(key);
+        if (t == null) {
+            t = new long[1];
+            totals.put(key, t);
+        }
+        return t[0] += amountCents;
+    }
+
+    private int monthKeyOfDay(int epochDay) {
+        if (epochDay < cachedMonthFirst || epochDay > cachedMonthLast) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            cachedMonthKey = date.getYear() * 12 + date.getMonthValue() - 1;
+            cachedMonthFirst = (int) date.withDayOfMonth(1).toEpochDay();
+            cachedMonthLast = (int) date.withDayOfMonth(date.lengthOfMonth()).toEpochDay();
+        }
+        return cachedMonthKey;
+    }
+
+    private void deliver(BudgetAlert alert) {
+        for (Consumer<BudgetAlert> subscriber : subscribers) {
+            try {
+                subscriber.accept(alert);
+            } catch (RuntimeException e) {
+                // one failing subscriber must not stop the others
+                System.out.println("Alert subscriber failed: " + e);
+            }
+        }
+    }
+
+    private String message(AlertRule rule, int period, double value, int epochDay) {
+        switch (rule.getKind()) {
+            case CATEGORY_BUDGET:
+                return "⚠ " + rule.getCategory() + " budget of ₹" + rule.getThreshold()
+                        + " exceeded for " + yearMonth(period) + ": ₹" + value;
+            case BUDGET_PERCENT:
+                return "⚠ " + rule.getThreshold() + "% of monthly budget reached for "
+                        + yearMonth(period) + ": ₹" + value * budget / 100;
+            default:
+                return String.format("⚠ %s on %s is %.1fx the %d-day average",
+                        rule.getCategory() == null ? "Spending" : rule.getCategory(),
+                        LocalDate.ofEpochDay(epochDay), value, rule.getDays());
+        }
+    }
+
+    private static YearMonth yearMonth(int monthKey) {
+        return YearMonth.of(monthKey / 12, monthKey % 12 + 1);
+    }
+
+    private final class Scope {
+        final Map<Integer, long[]> monthTotals = new HashMap<>();
+        final Map<Integer, long[]> dayTotals = new HashMap<>();
+        final Map<String, Ladder> ladders = new LinkedHashMap<>();
+
+        Ladder ladder(AlertRule rule) {
+            return ladders.computeIfAbsent(rule.getKind() + ":" + rule.getDays(),
+                    k -> new Ladder(rule.getKind(), rule.getDays()));
+        }
+    }
+
+    // Rules measuring the same value, sorted by threshold.
+    private final class Ladder {
+        final AlertRule.Kind kind;
+        final int days;
+        AlertRule[] rules = new AlertRule[4];
+        double[] thresholds = new double[4];
+        int size;
+        // highest threshold already alerted, per month or day
+        final Map<Integer, Double> alerted = new HashMap<>();
+
+        Ladder(AlertRule.Kind kind, int days) {
+            this.kind = kind;
+            this.days = days;
+        }
+
+        void add(AlertRule rule) {
+            if (size == rules.length) {
+                rules = Arrays.copyOf(rules, size * 2);
+                thresholds = Arrays.copyOf(thresholds, size * 2);
+            }
+            int pos = upperBound(rule.getThreshold());
+            System.arraycopy(rules, pos, rules, pos + 1, size - pos);
+            System.arraycopy(thresholds, pos, thresholds, pos + 1, size - pos);
+            rules[pos] = rule;
+            thresholds[pos] = rule.getThreshold();
+            size++;
+        }
+
+        void remove(AlertRule rule) {
+            for (int i = 0; i < size; i++) {
+                if (rules[i].equals(rule)) {
+                    System.arraycopy(rules, i + 1, rules, i, size - i - 1);
+                    System.arraycopy(thresholds, i + 1, thresholds, i, size - i - 1);
+                    rules[--size] = null;
+                    return;
+                }
+            }
+        }
+
+        void cross(int period, double value, int epochDay, boolean alert) {
+            Double done = alerted.get(period);
+            int i = done == null ? 0 : upperBound(done);
+            if (i == size || !crosses(thresholds[i], value))
+                return;
+
+            List<BudgetAlert> fired = alert ? new ArrayList<>() : null;
+            for (; i < size && crosses(thresholds[i], value); i++) {
+                if (alert)
+                    fired.add(new BudgetAlert(rules[i], LocalDate.ofEpochDay(epochDay), value,
+                            message(rules[i], period, value, epochDay)));
+            }
+            alerted.put(period, thresholds[i - 1]);
+            if (alert) {
+                for (BudgetAlert a : fired)
+                    deliver(a);
+            }
+        }
+
+        // percentages are "reached", amounts and rates must be exceeded
+        private boolean crosses(double threshold, double value) {
+            return kind == AlertRule.Kind.BUDGET_PERCENT ? value >= threshold : value > threshold;
+        }
+
+        private int upperBound(double threshold) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (thresholds[mid] <= threshold)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package service;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import com.g1rix.javalearning.util.QuantileSketch;
+import model.Expense;
+
+/**
+ * Closed months of expenses, one compressed {@link ArchiveBlock} per month.
+ *
+ * Totals and month summaries come from the block summaries and never
+ * decompress anything. Reading individual expenses expands the blocks
+ * involved; the most recently expanded ones are kept in a small LRU so
+ * paging through one month does not decode it again for every page.
+ */
+public class ExpenseArchive {
+
+    private static final int DEFAULT_CACHED_BLOCKS = 8;
+
+    private final TreeMap<YearMonth, ArchiveBlock> blocks = new TreeMap<>();
+    private final Map<YearMonth, ExpenseBatch> expanded;
+    private long count;
+    private long totalCents;
+    private final Map<String, Long> categoryCents = new HashMap<>();
+    // amount quantiles per category, "" for all; null until first needed
+    private Map<String, QuantileSketch> sketches;
+
+    public ExpenseArchive() {
+        this(DEFAULT_CACHED_BLOCKS);
+    }
+
+    public ExpenseArchive(int cachedBlocks) {
+        this.expanded = new LinkedHashMap<YearMonth, ExpenseBatch>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<YearMonth, ExpenseBatch> eldest) {
+                return size() > cachedBlocks;
+            }
+        };
+    }
+
+    /**
+     * Archives the expenses in {@code batch}, which must be in date order.
+     * Expenses for a month that is already archived are merged into its block.
+     */
+    public void add(ExpenseBatch batch) {
+        int from = 0;
+        while (from < batch.size()) {
+            YearMonth month = YearMonth.from(LocalDate.ofEpochDay(batch.epochDay(from)));
+            int last = (int) month.atEndOfMonth().toEpochDay();
+            int to = from;
+            while (to < batch.size() && batch.epochDay(to) <= last)
+                to++;
+
+            ArchiveBlock old = blocks.get(month);
+            ArchiveBlock block;
+            if (old == null) {
+                block = ArchiveBlock.encode(month, batch, from, to);
+            } else {
+                ExpenseBatch merged = merge(old.decode(), batch, from, to);
+                block = ArchiveBlock.encode(month, merged, 0, merged.size());
+                account(old, -1);
+            }
+            blocks.put(month, block);
+            account(block, 1);
+            synchronized (expanded) {
+                expanded.remove(month);
+            }
+            synchronized (this) {
+                if (sketches != null) {
+                    for (int i = from; i < to; i++)
+                        sketch(batch.category(i), batch.amountCents(i));
+                }
+            }
+            from = to;
+        }
+    }
+
+    public void clear() {
+        blocks.clear();
+        synchronized (expanded) {
+            expanded.clear();
+        }
+        count = 0;
+        totalCents = 0;
+        categoryCents.clear();
+        synchronized (this) {
+            sketches = null;
+        }
+    }
+
+    public boolean isEmpty() {
+        return blocks.isEmpty();
+    }
+
+    /** Number of archived expenses. */
+    public long size() {
+        return count;
+    }
+
+    public Collection<ArchiveBlock> blocks() {
+        return Collections.unmodifiableCollection(blocks.values());
+    }
+
+    public boolean contains(YearMonth month) {
+        return blocks.containsKey(month);
+    }
+
+    public long totalCents() {
+        return totalCents;
+    }
+
+    public long totalCents(String category) {
+        Long cents = categoryCents.get(category);
+        return cents == null ? 0 : cents;
+    }
+
+    public long totalCents(YearMonth month) {
+        ArchiveBlock block = blocks.get(month);
+        return block == null ? 0 : block.getTotalCents();
+    }
+
+    /** Summary of an archived month, or null if it is not archived. */
+    public MonthSummary summary(YearMonth month) {
+        ArchiveBlock block = blocks.get(month);
+        return block == null ? null : block.summary();
+    }
+
+    /** The archived expenses of {@code month} in date order; empty if not archived. */
+    public List<Expense> expenses(YearMonth month) {
+        List<Expense> result = new ArrayList<>();
+        LocalDate first = month.atDay(1);
+        expensesBetween(first, month.atEndOfMonth(), result);
+        return result;
+    }
+
+    /** Adds the archived expenses dated within [from, to] to {@code out}, in date order; none if from is after to. */
+    public void expensesBetween(LocalDate from, LocalDate to, List<Expense> out) {
+        int first = (int) from.toEpochDay();
+        int last = (int) to.toEpochDay();
+        for (YearMonth month : months(first, last)) {
+            ExpenseBatch batch = expand(month);
+            for (int i = 0; i < batch.size(); i++) {
+                int day = batch.epochDay(i);
+                if (day >= first && day <= last)
+                    out.add(Expense.of(batch.category(i), batch.amountCents(i) / 100.0,
+                            LocalDate.ofEpochDay(day)));
+            }
+        }
+    }
+
+    /**
+     * Adds the archived expenses of {@code category}, or of every category if
+     * it is null, dated within [firstDay, lastDay] (epoch days) to {@code out}
+     * in date order.
+     */
+    public void rowsBetween(int firstDay, int lastDay, String category, ExpenseBatch out) {
+        for (YearMonth month : months(firstDay, lastDay)) {
+            ExpenseBatch batch = expand(month);
+            for (int i = 0; i < batch.size(); i++) {
+                int day = batch.epochDay(i);
+                if (day >= firstDay && day <= lastDay && (category == null || category.equals(batch.category(i))))
+                    out.add(batch.category(i), batch.amountCents(i), day);
+            }
+        }
+    }
+
+    /**
+     * Adds the archived cents spent on each day in [firstDay, lastDay] to
+     * {@code out[day - firstDay]}. Months wholly inside the range are still
+     * expanded, since the block summaries are per month, not per day.
+     */
+    public void addDailyCents(int firstDay, int lastDay, long[] out) {
+        for (YearMonth month : months(firstDay, lastDay)) {
+            ExpenseBatch batch = expand(month);
+            for (int i = 0; i < batch.size(); i++) {
+                int day = batch.epochDay(i);
+                if (day >= firstDay && day <= lastDay)
+                    out[day - firstDay] += batch.amountCents(i);
+            }
+        }
+    }
+
+    // Archived months overlapping [firstDay, lastDay]; either end may lie beyond the archive.
+    private Collection<YearMonth> months(int firstDay, int lastDay) {
+        if (blocks.isEmpty() || firstDay > lastDay)
+            return Collections.emptyList();
+        YearMonth first = blocks.firstKey();
+        YearMonth last = blocks.lastKey();
+        if (firstDay > (int) first.atDay(1).toEpochDay())
+            first = YearMonth.from(LocalDate.ofEpochDay(firstDay));
+        if (lastDay < (int) last.atEndOfMonth().toEpochDay())
+            last = YearMonth.from(LocalDate.ofEpochDay(lastDay));
+        if (first.isAfter(last))
+            return Collections.emptyList();
+        return blocks.subMap(first, true, last, true).keySet();
+    }
+
+    /**
+     * Adds the archived amounts of {@code category}, or of every expense if
+     * it is null, to {@code out} as cents; {@code out} must have the default
+     * accuracy. The first call decodes every block once to build the
+     * sketches, bypassing the LRU.
+     */
+    public synchronized void mergeAmounts(String category, QuantileSketch out) {
+        if (sketches == null) {
+            sketches = new HashMap<>();
+            for (ArchiveBlock block : blocks.values()) {
+                ExpenseBatch batch = block.decode();
+                for (int i = 0; i < batch.size(); i++)
+                    sketch(batch.category(i), batch.amountCents(i));
+            }
+        }
+        QuantileSketch sketch = sketches.get(category == null ? "" : category);
+        if (sketch != null)
+            out.merge(sketch);
+    }
+
+    private void sketch(String category, long amountCents) {
+        QuantileSketch sketch = sketches.get(category);
+        if (sketch == null)
+            sketches.put(category, sketch = new QuantileSketch());
+        sketch.add(amountCents);
+        sketch = sketches.get("");
+        if (sketch == null)
+            sketches.put("", sketch = new QuantileSketch());
+        sketch.add(amountCents);
+    }
+
+    private ExpenseBatch expand(YearMonth month) {
+        // readers may share the archive, and even a lookup reorders the LRU
+        synchronized (expanded) {
+            ExpenseBatch batch = expanded.get(month);
+            if (batch == null) {
+                batch = blocks.get(month).decode();
+                expanded.put(month, batch);
+            }
+            return batch;
+        }
+    }
+
+    /** Size in bytes of {@link #write}'s output. */
+    public int encodedSize() {
+        int size = 4;
+        for (ArchiveBlock block : blocks.values())
+            size += block.encodedSize();
+        return size;
+    }
+
+    public void write(ByteBuffer out) {
+        out.putInt(blocks.size());
+        for (ArchiveBlock block : blocks.values())
+            block.write(out);
+    }
+
+    /** Replaces the contents with blocks read from {@code in}. */
+    public void read(ByteBuffer in) {
+        clear();
+        int n = in.getInt();
+        for (int i = 0; i < n; i++) {
+            ArchiveBlock block = ArchiveBlock.read(in);
+            blocks.put(block.getMonth(), block);
+            account(block, 1);
+        }
+    }
+
+    private void account(ArchiveBlock block, int sign) {
+        count += sign * block.getCount();
+        totalCents += sign * block.getTotalCents();
+        MonthSummary summary = block.summary();
+        for (Map.Entry<String, Long> e : summary.getCategoryCents().entrySet()) {
+            Long cents = categoryCents.get(e.getKey());
+            categoryCents.put(e.getKey(), (cents == null ? 0 : cents) + sign * e.getValue());
+        }
+    }
+
+    // Both inputs are in date order; on equal dates the already archived rows come first.
+    private static ExpenseBatch merge(ExpenseBatch archived, ExpenseBatch added, int from, int to) {
+        ExpenseBatch merged = new ExpenseBatch(archived.size() + to - from);
+        int i = 0;
+        int j = from;
+        while (i < archived.size() || j < to) {
+            if (j == to || (i < archived.size() && archived.epochDay(i) <= added.epochDay(j))) {
+                merged.add(archived.category(i), archived.amountCents(i), archived.epochDay(i));
+                i++;
+            } else {
+                merged.add(added.category(j), added.amountCents(j), added.epochDay(j));
+                j++;
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,56 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * A block of expenses in column form, filled off the main path and then
+ * handed to {@link ExpenseService#addBatch} in one call.
+ */
+public class ExpenseBatch {
+
+    private String[] categories;
+    private long[] cents;
+    private int[] days;
+    private int size;
+
+    public ExpenseBatch(int capacity) {
+        int initial = Math.max(1, capacity);
+        categories = new String[initial];
+        cents = new long[initial];
+        days = new int[initial];
+    }
+
+    public void add(String category, long amountCents, int epochDay) {
+        if (size == cents.length) {
+            int capacity = size * 2;
+            categories = Arrays.copyOf(categories, capacity);
+            cents = Arrays.copyOf(cents, capacity);
+            days = Arrays.copyOf(days, capacity);
+        }
+        categories[size] = category;
+        cents[size] = amountCents;
+        days[size] = epochDay;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String category(int index) {
+        return categories[index];
+    }
+
+    public long amountCents(int index) {
+        return cents[index];
+    }
+
+    public int epochDay(int index) {
+        return days[index];
+    }
+
+    public void clear() {
+        Arrays.fill(categories, 0, size, null);
+        size = 0;
+    }
+}
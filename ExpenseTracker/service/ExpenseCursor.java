@@ -0,0 +1,82 @@
+package service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.time.LocalDate;
+import java.util.List;
+import model.Expense;
+
+/**
+ * The matching expenses of one {@link ExpenseQuery}, held as slot numbers
+ * into the store and read a page at a time. Matching archived expenses are
+ * copied out of the archive into a batch; their entries are -1 - row. A
+ * cursor reflects the store at the time it was created; get a new one after
+ * adding or removing expenses.
+ */
+public class ExpenseCursor {
+
+    private final ExpenseStore store;
+    private final ExpenseBatch archived;
+    private final int[] slots;
+    private final int size;
+
+    ExpenseCursor(ExpenseStore store, int[] slots, int size) {
+        this(store, null, slots, size);
+    }
+
+    ExpenseCursor(ExpenseStore store, ExpenseBatch archived, int[] slots, int size) {
+        this.store = store;
+        this.archived = archived;
+        this.slots = slots;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int pageCount(int pageSize) {
+        return (size + pageSize - 1) / pageSize;
+    }
+
+    /** Expenses on page {@code page} (0-based). */
+    public List<Expense> getPage(int page, int pageSize) {
+        int start = page * pageSize;
+        int end = Math.min(size, start + pageSize);
+        List<Expense> result = new ArrayList<>(Math.max(0, end - start));
+        for (int i = start; i < end; i++) {
+            int slot = slots[i];
+            if (slot >= 0) {
+                result.add(store.get(slot));
+            } else {
+                int row = -1 - slot;
+                result.add(Expense.of(archived.category(row), archived.amountCents(row) / 100.0,
+                        LocalDate.ofEpochDay(archived.epochDay(row))));
+            }
+        }
+        return result;
+    }
+
+    /** Writes page {@code page} (0-based) and returns the number of rows written. */
+    public int writePage(ExpenseWriter writer, int page, int pageSize) throws IOException {
+        int start = page * pageSize;
+        int end = Math.min(size, start + pageSize);
+        for (int i = start; i < end; i++)
+            write(writer, slots[i]);
+        writer.flush();
+        return Math.max(0, end - start);
+    }
+
+    public void writeAll(ExpenseWriter writer) throws IOException {
+        for (int i = 0; i < size; i++)
+            write(writer, slots[i]);
+        writer.flush();
+    }
+
+    private void write(ExpenseWriter writer, int slot) throws IOException {
+        if (slot >= 0)
+            writer.write(store, slot);
+        else
+            writer.write(archived, -1 - slot);
+    }
+}
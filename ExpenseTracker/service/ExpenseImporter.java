@@ -0,0 +1,200 @@
+package service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import exception.InvalidExpenseException;
+import model.Expense;
+
+/**
+ * Streams expenses from CSV lines of the form {@code date,category,amount}
+ * (for example {@code 2026-10-18,Food,250.00}) into an {@link ExpenseService}.
+ *
+ * The input is read in chunks of lines; chunks are parsed and validated on a
+ * worker pool while the reader moves on, and the parsed batches are added in
+ * input order. Only a fixed number of chunks is in flight at once, so memory
+ * stays bounded however large the file is. Bad rows are reported as
+ * {@link InvalidExpenseException}s and skipped instead of stopping the import.
+ *
+ * Imported expenses are not journaled one by one; callers should checkpoint
+ * afterwards to persist them.
+ */
+public class ExpenseImporter {
+
+    private static final int CHUNK_LINES = 8192;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final ExpenseService service;
+    private final int threads;
+
+    public ExpenseImporter(ExpenseService service) {
+        this(service, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ExpenseImporter(ExpenseService service, int threads) {
+        this.service = service;
+        this.threads = Math.max(1, threads);
+    }
+
+    public ImportResult importFile(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader);
+        }
+    }
+
+    public ImportResult importFrom(Reader reader) throws IOException {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        Totals totals = new Totals();
+
+        try {
+            BufferedReader in = reader instanceof BufferedReader
+                    ? (BufferedReader) reader : new BufferedReader(reader, 1 << 16);
+            String[] lines = new String[CHUNK_LINES];
+            int count = 0;
+            long firstLine = 1;
+            long lineNo = 0;
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (lineNo == 1 && line.regionMatches(true, 0, "date", 0, 4))
+                    line = "";
+                lines[count++] = line;
+
+                if (count == CHUNK_LINES) {
+                    inFlight.add(pool.submit(new Chunk(lines, count, firstLine)));
+                    lines = new String[CHUNK_LINES];
+                    count = 0;
+                    firstLine = lineNo + 1;
+                    if (inFlight.size() >= threads * 2)
+                        apply(inFlight.poll(), totals);
+                }
+            }
+            if (count > 0)
+                inFlight.add(pool.submit(new Chunk(lines, count, firstLine)));
+            while (!inFlight.isEmpty())
+                apply(inFlight.poll(), totals);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        return new ImportResult(totals.imported, totals.rejected, totals.errors, elapsed);
+    }
+
+    private void apply(Future<Chunk> future, Totals totals) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import failed", e.getCause());
+        }
+
+        service.addBatch(chunk.batch);
+        totals.imported += chunk.batch.size();
+        totals.rejected += chunk.errors.size();
+        for (InvalidExpenseException e : chunk.errors) {
+            if (totals.errors.size() == MAX_REPORTED_ERRORS)
+                break;
+            totals.errors.add(e);
+        }
+    }
+
+    private static final class Totals {
+        long imported;
+        long rejected;
+        final List<InvalidExpenseException> errors = new ArrayList<>();
+    }
+
+    private static final class Chunk implements Callable<Chunk> {
+        private final String[] lines;
+        private final int count;
+        private final long firstLine;
+        final ExpenseBatch batch;
+        final List<InvalidExpenseException> errors = new ArrayList<>();
+
+        // Statements are usually sorted by date, so consecutive rows tend to
+        // repeat the previous date string.
+        private String lastDate;
+        private int lastDay;
+
+        Chunk(String[] lines, int count, long firstLine) {
+            this.lines = lines;
+            this.count = count;
+            this.firstLine = firstLine;
+            this.batch = new ExpenseBatch(count);
+        }
+
+        @Override
+        public Chunk call() {
+            for (int i = 0; i < count; i++) {
+                String line = lines[i];
+                lines[i] = null;
+                if (line.trim().isEmpty())
+                    continue;
+                try {
+                    parse(line, firstLine + i);
+                } catch (InvalidExpenseException e) {
+                    errors.add(e);
+                }
+            }
+            return this;
+        }
+
+        private void parse(String line, long lineNo) throws InvalidExpenseException {
+            int c1 = line.indexOf(',');
+            int c2 = c1 < 0 ? -1 : line.indexOf(',', c1 + 1);
+            if (c2 < 0 || line.indexOf(',', c2 + 1) >= 0)
+                throw new InvalidExpenseException(lineNo, "Expected date,category,amount");
+
+            String date = line.substring(0, c1).trim();
+            String category = line.substring(c1 + 1, c2).trim();
+            String amountText = line.substring(c2 + 1).trim();
+
+            int day;
+            if (date.equals(lastDate)) {
+                day = lastDay;
+            } else {
+                try {
+                    day = (int) LocalDate.parse(date).toEpochDay();
+                } catch (DateTimeParseException e) {
+                    throw new InvalidExpenseException(lineNo, "Invalid date '" + date + "'");
+                }
+                lastDate = date;
+                lastDay = day;
+            }
+
+            if (!Expense.isCategory(category))
+                throw new InvalidExpenseException(lineNo, "Unknown category '" + category + "'");
+
+            double amount;
+            try {
+                amount = Double.parseDouble(amountText);
+            } catch (NumberFormatException e) {
+                throw new InvalidExpenseException(lineNo, "Invalid amount '" + amountText + "'");
+            }
+            if (!(amount > 0) || Double.isInfinite(amount))
+                throw new InvalidExpenseException(lineNo, "Amount must be positive");
+
+            batch.add(category, ExpenseStore.toCents(amount), day);
+        }
+    }
+}
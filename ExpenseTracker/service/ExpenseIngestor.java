@@ -0,0 +1,259 @@
+package service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import model.Expense;
+
+/**
+ * Lets many threads add expenses to one {@link ExpenseService}, which is not
+ * thread-safe itself.
+ *
+ * Producers claim a slot in a bounded ring buffer with a compare-and-set on
+ * the claim sequence, fill it and mark it published; no locks are taken. A
+ * single consumer thread collects runs of published slots into a batch and
+ * applies each with {@link ExpenseService#addBatch(ExpenseBatch, boolean)},
+ * so the store, running totals, journal and alerts are updated once per
+ * batch rather than once per expense. When the buffer is full producers wait
+ * (or give up, for {@code offer}) until the consumer frees slots.
+ *
+ * While the ingestor runs, its consumer is the only thread that may use the
+ * service; call {@link #flush} or {@link #close} before reading from it
+ * elsewhere. Producers must stop publishing before {@link #close}.
+ *
+ * A batch the service refuses is not retried. It is handed to the failure
+ * handler, if one was given, counted in {@link IngestionMetrics#getFailed},
+ * and reported by the next {@link #flush}.
+ */
+public class ExpenseIngestor {
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int MAX_BATCH = 4096;
+    private static final long IDLE_PARK_NANOS = 50_000;
+    private static final long FULL_PARK_NANOS = 10_000;
+
+    private final ExpenseService service;
+    private final Runnable afterBatch;
+    private final BiConsumer<ExpenseBatch, RuntimeException> onFailure;
+    private final int capacity;
+    private final int mask;
+
+    private final String[] categories;
+    private final long[] cents;
+    private final int[] days;
+    // sequence last published into each slot; the consumer waits for the one it expects
+    private final AtomicLongArray published;
+
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private volatile long consumed = -1;
+    private volatile boolean running = true;
+    private final Thread consumer;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+    private volatile long batches;
+    private volatile long failed;
+    private volatile RuntimeException lastFailure;
+    private final AtomicLong reportedFailures = new AtomicLong();
+    private volatile int maxQueueDepth;
+    private final long startNanos = System.nanoTime();
+
+    public ExpenseIngestor(ExpenseService service) {
+        this(service, DEFAULT_CAPACITY, null);
+    }
+
+    /**
+     * @param capacity   buffer size, rounded up to a power of two
+     * @param afterBatch run on the consumer thread after each applied batch,
+     *                   for example to checkpoint; may be null
+     */
+    public ExpenseIngestor(ExpenseService service, int capacity, Runnable afterBatch) {
+        this(service, capacity, afterBatch, null);
+    }
+
+    /**
+     * @param onFailure run on the consumer thread with a batch the service
+     *                  refused and the error, before the batch is discarded;
+     *                  may be null, in which case the error is printed
+     */
+    public ExpenseIngestor(ExpenseService service, int capacity, Runnable afterBatch,
+                           BiConsumer<ExpenseBatch, RuntimeException> onFailure) {
+        this.service = service;
+        this.afterBatch = afterBatch;
+        this.onFailure = onFailure;
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.categories = new String[this.capacity];
+        this.cents = new long[this.capacity];
+        this.days = new int[this.capacity];
+        this.published = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++)
+            published.set(i, -1);
+
+        consumer = new Thread(this::consume, "expense-ingest");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /** Publishes {@code expense}, waiting while the buffer is full. */
+    public void publish(Expense expense) throws InterruptedException {
+        publish(expense.getCategory(), ExpenseStore.toCents(expense.getAmount()),
+                (int) expense.getDate().toEpochDay());
+    }
+
+    public void publish(String category, long amountCents, int epochDay) throws InterruptedException {
+        write(claim(Long.MAX_VALUE), category, amountCents, epochDay);
+    }
+
+    /** Publishes without waiting; returns false if the buffer is full. */
+    public boolean offer(String category, long amountCents, int epochDay) {
+        try {
+            return offer(category, amountCents, epochDay, 0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Publishes, waiting up to {@code timeout} for space; returns false if none came free. */
+    public boolean offer(String category, long amountCents, int epochDay, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long seq = claim(unit.toNanos(timeout));
+        if (seq < 0)
+            return false;
+        write(seq, category, amountCents, epochDay);
+        return true;
+    }
+
+    /**
+     * Waits until everything published so far has been applied to the service.
+     *
+     * @throws IllegalStateException if expenses published since the last
+     *         flush could not be applied; they are not in the service
+     */
+    public void flush() throws InterruptedException {
+        long target = claimed.get();
+        while (consumed < target && consumer.isAlive()) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+            if (Thread.interrupted())
+                throw new InterruptedException();
+        }
+        long failedNow = failed;
+        long reported = reportedFailures.getAndSet(failedNow);
+        if (failedNow > reported)
+            throw new IllegalStateException((failedNow - reported) + " expenses could not be applied",
+                    lastFailure);
+    }
+
+    /** Applies what is left in the buffer and stops the consumer. */
+    public void close() throws InterruptedException {
+        running = false;
+        consumer.join();
+    }
+
+    public IngestionMetrics metrics() {
+        long failedNow = failed;
+        long handled = consumed + 1;
+        long published = claimed.get() + 1;
+        return new IngestionMetrics(published, handled - failedNow, failedNow, batches, rejected.sum(),
+                backpressureWaits.sum(), (int) (published - handled), maxQueueDepth, capacity,
+                System.nanoTime() - startNanos);
+    }
+
+    // Returns the claimed sequence, or -1 if the buffer stayed full for timeoutNanos.
+    private long claim(long timeoutNanos) throws InterruptedException {
+        long deadline = 0;
+        boolean waiting = false;
+        while (true) {
+            if (!running)
+                throw new IllegalStateException("Ingestor is closed");
+            long current = claimed.get();
+            if (current + 1 - consumed > capacity) {
+                long now = System.nanoTime();
+                if (!waiting) {
+                    if (timeoutNanos <= 0) {
+                        rejected.increment();
+                        return -1;
+                    }
+                    waiting = true;
+                    deadline = now + timeoutNanos;
+                    backpressureWaits.increment();
+                } else if (timeoutNanos != Long.MAX_VALUE && now - deadline >= 0) {
+                    rejected.increment();
+                    return -1;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                continue;
+            }
+            if (claimed.compareAndSet(current, current + 1))
+                return current + 1;
+        }
+    }
+
+    private void write(long seq, String category, long amountCents, int epochDay) {
+        int i = (int) seq & mask;
+        categories[i] = category;
+        cents[i] = amountCents;
+        days[i] = epochDay;
+        // release store: the slot's fields are visible before the sequence is
+        published.lazySet(i, seq);
+    }
+
+    private void consume() {
+        ExpenseBatch batch = new ExpenseBatch(MAX_BATCH);
+        while (true) {
+            long next = consumed + 1;
+            int n = 0;
+            while (n < MAX_BATCH) {
+                long seq = next + n;
+                int i = (int) seq & mask;
+                if (published.get(i) != seq)
+                    break;
+                batch.add(categories[i], cents[i], days[i]);
+                categories[i] = null;
+                n++;
+            }
+
+            if (n == 0) {
+                if (!running && claimed.get() < next)
+                    return;
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            int depth = (int) (claimed.get() - next + 1);
+            if (depth > maxQueueDepth)
+                maxQueueDepth = depth;
+            try {
+                service.addBatch(batch, true);
+                if (afterBatch != null)
+                    afterBatch.run();
+            } catch (RuntimeException e) {
+                failed += n;
+                lastFailure = e;
+                failedBatch(batch, e);
+            }
+            batch.clear();
+            batches++;
+            // frees the slots for producers
+            consumed = next + n - 1;
+        }
+    }
+
+    private void failedBatch(ExpenseBatch batch, RuntimeException e) {
+        if (onFailure == null) {
+            System.out.println("Error applying " + batch.size() + " expenses: " + e.getMessage());
+            return;
+        }
+        try {
+            onFailure.accept(batch, e);
+        } catch (RuntimeException handlerError) {
+            System.out.println("Error in failure handler: " + handlerError.getMessage());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package service;
+
+import java.time.LocalDate;
+
+/**
+ * Filter and sort order for {@link ExpenseService#query}. All filters are
+ * optional; an empty query lists every expense in the order it was added.
+ */
+public class ExpenseQuery {
+
+    public enum Sort { INSERTION, DATE_ASC, DATE_DESC, AMOUNT_ASC, AMOUNT_DESC }
+
+    private String category;
+    private LocalDate from;
+    private LocalDate to;
+    private Sort sort = Sort.INSERTION;
+
+    public ExpenseQuery category(String category) {
+        this.category = category;
+        return this;
+    }
+
+    /** Inclusive date range; either end may be null. */
+    public ExpenseQuery between(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    public ExpenseQuery sortBy(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+}
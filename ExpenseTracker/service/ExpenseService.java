@@ -1,47 +1,478 @@
 package service;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.g1rix.javalearning.util.QuantileSketch;
 import model.Expense;
 import model.User;
+import util.ExpenseJournal;
 
 public class ExpenseService {
 
-    private ArrayList<Expense> expenses = new ArrayList<>();
+    private final ExpenseStore store = new ExpenseStore();
+    private final ExpenseArchive archive = new ExpenseArchive();
+    private ExpenseJournal journal;
+    private BudgetAlertEngine alerts;
+    private ExpenseWriter console;
 
     public void addExpense(Expense expense) {
-        expenses.add(expense);
+        store.add(expense);
+        if (journal != null)
+            journal.append(expense);
+        if (alerts != null)
+            alerts.onExpense(expense.getCategory(), ExpenseStore.toCents(expense.getAmount()),
+                    (int) expense.getDate().toEpochDay());
+    }
+
+    /** Adds every expense in the batch; batches are not journaled. */
+    public void addBatch(ExpenseBatch batch) {
+        addBatch(batch, false);
+    }
+
+    /**
+     * Adds every expense in the batch, journaling them with one write when
+     * {@code journaled} is set.
+     */
+    public void addBatch(ExpenseBatch batch, boolean journaled) {
+        for (int i = 0; i < batch.size(); i++) {
+            store.add(batch.amountCents(i), store.categoryId(batch.category(i)),
+                    batch.epochDay(i));
+        }
+        if (journaled && journal != null)
+            journal.append(batch);
+        if (alerts != null)
+            alerts.onBatch(batch);
+    }
+
+    public void removeExpense(int index) {
+        if (alerts != null)
+            alerts.onRemoval(store.categoryName(store.categoryId(index)),
+                    store.amountCents(index), store.epochDay(index));
+        store.remove(index);
+        if (journal != null)
+            journal.appendRemoval(index);
+    }
+
+    public void setBudget(User user, double monthlyBudget) {
+        user.setMonthlyBudget(monthlyBudget);
+        if (journal != null)
+            journal.appendBudget(monthlyBudget);
+        if (alerts != null)
+            alerts.setBudget(monthlyBudget);
     }
 
     public void viewExpenses() {
-        if (expenses.isEmpty()) {
+        ExpenseCursor cursor = query(new ExpenseQuery());
+        if (cursor.size() == 0) {
             System.out.println("No expenses found.");
             return;
         }
-        for (Expense e : expenses) {
-            System.out.println(e);
+        ExpenseWriter out = console();
+        try {
+            synchronized (out) {
+                cursor.writeAll(out);
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing expenses.");
+        }
+    }
+
+    /**
+     * Prints one page (0-based) of {@code cursor}; get the cursor once from
+     * {@link #query} and page through it. Returns false once there are no
+     * further pages.
+     */
+    public boolean viewExpenses(ExpenseCursor cursor, int page, int pageSize) {
+        if (cursor.size() == 0) {
+            System.out.println("No expenses found.");
+            return false;
+        }
+        ExpenseWriter out = console();
+        try {
+            synchronized (out) {
+                cursor.writePage(out, page, pageSize);
+                out.writeLine("Page " + (page + 1) + " of " + cursor.pageCount(pageSize)
+                        + " (" + cursor.size() + " expenses)");
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing expenses.");
+        }
+        return page + 1 < cursor.pageCount(pageSize);
+    }
+
+    /** Expenses matching {@code query}, archived months included. */
+    public ExpenseCursor query(ExpenseQuery query) {
+        short category = -1;
+        boolean live = true;
+        if (query.getCategory() != null) {
+            category = store.findCategory(query.getCategory());
+            // not among the live expenses, but it may still be archived
+            live = category >= 0;
+        }
+
+        ExpenseQuery.Sort sort = query.getSort();
+        boolean byDate = query.getFrom() != null || query.getTo() != null
+                || sort == ExpenseQuery.Sort.DATE_ASC || sort == ExpenseQuery.Sort.DATE_DESC;
+
+        int[] slots = new int[16];
+        int n = 0;
+        if (live && byDate) {
+            int start = query.getFrom() == null ? 0 : store.lowerBound((int) query.getFrom().toEpochDay());
+            int end = query.getTo() == null ? store.size() : store.lowerBound((int) query.getTo().toEpochDay() + 1);
+            for (int pos = start; pos < end; pos++) {
+                int slot = store.slotByDate(pos);
+                if (category >= 0 && store.categoryId(slot) != category)
+                    continue;
+                if (n == slots.length)
+                    slots = Arrays.copyOf(slots, n * 2);
+                slots[n++] = slot;
+            }
+        } else if (live) {
+            for (int slot = 0; slot < store.size(); slot++) {
+                if (category >= 0 && store.categoryId(slot) != category)
+                    continue;
+                if (n == slots.length)
+                    slots = Arrays.copyOf(slots, n * 2);
+                slots[n++] = slot;
+            }
+        }
+
+        ExpenseBatch archived = archived(query);
+        if (archived != null)
+            return withArchived(archived, slots, n, sort, byDate);
+
+        switch (sort) {
+            case INSERTION:
+                if (byDate)
+                    Arrays.sort(slots, 0, n);
+                break;
+            case DATE_DESC:
+                reverse(slots, n);
+                break;
+            case AMOUNT_ASC:
+            case AMOUNT_DESC:
+                store.sortByAmount(slots, n, sort == ExpenseQuery.Sort.AMOUNT_DESC);
+                break;
+            default:
+                break;
+        }
+        return new ExpenseCursor(store, slots, n);
+    }
+
+    // The archived expenses matching the query in date order, or null if there are none.
+    private ExpenseBatch archived(ExpenseQuery query) {
+        if (archive.isEmpty())
+            return null;
+        ExpenseBatch rows = new ExpenseBatch(16);
+        archive.rowsBetween(query.getFrom() == null ? Integer.MIN_VALUE : (int) query.getFrom().toEpochDay(),
+                query.getTo() == null ? Integer.MAX_VALUE : (int) query.getTo().toEpochDay(),
+                query.getCategory(), rows);
+        return rows.size() == 0 ? null : rows;
+    }
+
+    // Orders the archived rows (entries -1 - row) together with the live slots.
+    // Archived expenses count as added before every live one.
+    private ExpenseCursor withArchived(ExpenseBatch archived, int[] live, int n, ExpenseQuery.Sort sort,
+                                      boolean byDate) {
+        int rows = archived.size();
+        int total = rows + n;
+        int[] slots = new int[total];
+        switch (sort) {
+            case DATE_ASC:
+            case DATE_DESC: {
+                // both are in date order already
+                int a = 0, l = 0;
+                for (int i = 0; i < total; i++) {
+                    if (l == n || (a < rows && archived.epochDay(a) <= store.epochDay(live[l])))
+                        slots[i] = -1 - a++;
+                    else
+                        slots[i] = live[l++];
+                }
+                if (sort == ExpenseQuery.Sort.DATE_DESC)
+                    reverse(slots, total);
+                break;
+            }
+            case AMOUNT_ASC:
+            case AMOUNT_DESC: {
+                if (byDate)
+                    Arrays.sort(live, 0, n);
+                Integer[] order = new Integer[total];
+                for (int i = 0; i < rows; i++)
+                    order[i] = -1 - i;
+                for (int i = 0; i < n; i++)
+                    order[rows + i] = live[i];
+                // stable, so equal amounts stay archived first, then by slot
+                Arrays.sort(order, Comparator.comparingLong(
+                        slot -> slot >= 0 ? store.amountCents(slot) : archived.amountCents(-1 - slot)));
+                for (int i = 0; i < total; i++)
+                    slots[i] = order[i];
+                if (sort == ExpenseQuery.Sort.AMOUNT_DESC)
+                    reverse(slots, total);
+                break;
+            }
+            default:
+                if (byDate)
+                    Arrays.sort(live, 0, n);
+                for (int i = 0; i < rows; i++)
+                    slots[i] = -1 - i;
+                System.arraycopy(live, 0, slots, rows, n);
+                break;
+        }
+        return new ExpenseCursor(store, archived, slots, total);
+    }
+
+    private static void reverse(int[] slots, int n) {
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int t = slots[i];
+            slots[i] = slots[j];
+            slots[j] = t;
         }
     }
 
+    /**
+     * Streams the matching expenses to {@code file} as date,category,amount
+     * lines. Returns the number of rows written.
+     */
+    public int exportCsv(ExpenseQuery query, Path file) throws IOException {
+        ExpenseCursor cursor = query(query);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            ExpenseWriter writer = new ExpenseWriter(out, ExpenseWriter.Format.CSV);
+            writer.writeLine("date,category,amount");
+            cursor.writeAll(writer);
+        }
+        return cursor.size();
+    }
+
+    // Readers may share the service (see ExpenseTenants.read), so the writer is
+    // created and used under its lock.
+    private synchronized ExpenseWriter console() {
+        if (console == null)
+            console = new ExpenseWriter(new OutputStreamWriter(System.out), ExpenseWriter.Format.TEXT);
+        return console;
+    }
+
     public double getTotalExpense() {
-        double total = 0;
-        for (Expense e : expenses) {
-            total += e.calculateExpense();
+        return (store.totalCents() + archive.totalCents()) / 100.0;
+    }
+
+    public double getTotal(YearMonth month) {
+        return (store.totalCents(month) + archive.totalCents(month)) / 100.0;
+    }
+
+    public double getTotal(String category) {
+        return (store.totalCents(category) + archive.totalCents(category)) / 100.0;
+    }
+
+    /**
+     * Amount at quantile {@code q} (0.5 for the median, 0.99 for p99) of the
+     * expenses in {@code category}, or of all expenses if it is null,
+     * archived ones included. The result is within 1% of the exact value
+     * (see {@link QuantileSketch}); NaN if there are no such expenses.
+     */
+    public double getPercentile(String category, double q) {
+        QuantileSketch sketch = new QuantileSketch();
+        store.mergeAmounts(category, sketch);
+        archive.mergeAmounts(category, sketch);
+        return sketch.quantile(q) / 100.0;
+    }
+
+    /**
+     * Moves every expense dated before {@code month} into the compressed
+     * archive. Returns how many were moved.
+     *
+     * Live expenses are renumbered, and journaled removals refer to
+     * positions, so callers should checkpoint straight afterwards.
+     */
+    public int archiveBefore(YearMonth month) {
+        ExpenseBatch drained = new ExpenseBatch(16);
+        int moved = store.drainBefore((int) month.atDay(1).toEpochDay(), drained);
+        archive.add(drained);
+        return moved;
+    }
+
+    /** Expenses dated within [from, to], in date order, archived ones included. */
+    public List<Expense> expensesBetween(LocalDate from, LocalDate to) {
+        List<Expense> result = new ArrayList<>();
+        archive.expensesBetween(from, to, result);
+        boolean merge = !result.isEmpty();
+
+        int end = (int) to.toEpochDay();
+        for (int pos = store.lowerBound((int) from.toEpochDay()); pos < store.size(); pos++) {
+            int slot = store.slotByDate(pos);
+            if (store.epochDay(slot) > end)
+                break;
+            result.add(store.get(slot));
         }
-        return total;
+        // expenses added for a month after it was archived are still live
+        if (merge)
+            result.sort((a, b) -> a.getDate().compareTo(b.getDate()));
+        return result;
+    }
+
+    public MonthSummary monthSummary(YearMonth month) {
+        int end = (int) month.atEndOfMonth().toEpochDay();
+        int count = 0;
+        Map<String, Long> byCategory = new LinkedHashMap<>();
+        for (int pos = store.lowerBound((int) month.atDay(1).toEpochDay()); pos < store.size(); pos++) {
+            int slot = store.slotByDate(pos);
+            if (store.epochDay(slot) > end)
+                break;
+            String category = store.categoryName(store.categoryId(slot));
+            Long sum = byCategory.get(category);
+            byCategory.put(category, (sum == null ? 0 : sum) + store.amountCents(slot));
+            count++;
+        }
+
+        MonthSummary archived = archive.summary(month);
+        if (archived == null)
+            return new MonthSummary(month, count, store.totalCents(month), byCategory);
+        if (count == 0)
+            return archived;
+        for (Map.Entry<String, Long> e : archived.getCategoryCents().entrySet()) {
+            Long sum = byCategory.get(e.getKey());
+            byCategory.put(e.getKey(), (sum == null ? 0 : sum) + e.getValue());
+        }
+        return new MonthSummary(month, count + archived.getCount(),
+                store.totalCents(month) + archive.totalCents(month), byCategory);
+    }
+
+    /** Total of the {@code days} days ending on {@code end}, inclusive, archived expenses included. */
+    public double getRollingTotal(LocalDate end, int days) {
+        int last = (int) end.toEpochDay();
+        long total = 0;
+        if (!archive.isEmpty() && days > 0) {
+            long[] archived = new long[days];
+            archive.addDailyCents(last - days + 1, last, archived);
+            for (long cents : archived)
+                total += cents;
+        }
+        for (int pos = store.lowerBound(last - days + 1); pos < store.size(); pos++) {
+            int slot = store.slotByDate(pos);
+            if (store.epochDay(slot) > last)
+                break;
+            total += store.amountCents(slot);
+        }
+        return total / 100.0;
+    }
+
+    /**
+     * Rolling {@code days}-day total for every date from {@code from} to
+     * {@code to}, computed in one pass over the index with a sliding window.
+     * Archived days are totalled up front and slide through the same window.
+     */
+    public double[] getRollingTotals(LocalDate from, LocalDate to, int days) {
+        int first = (int) from.toEpochDay();
+        int last = (int) to.toEpochDay();
+        double[] totals = new double[Math.max(0, last - first + 1)];
+
+        int base = first - days + 1;
+        long[] archived = null;
+        if (!archive.isEmpty() && last >= first && days > 0) {
+            archived = new long[last - base + 1];
+            archive.addDailyCents(base, last, archived);
+        }
+
+        int head = store.lowerBound(first - days + 1);
+        int tail = head;
+        long window = 0;
+        for (int day = first; day <= last; day++) {
+            while (head < store.size() && store.epochDay(store.slotByDate(head)) <= day) {
+                window += store.amountCents(store.slotByDate(head));
+                head++;
+            }
+            while (tail < head && store.epochDay(store.slotByDate(tail)) <= day - days) {
+                window -= store.amountCents(store.slotByDate(tail));
+                tail++;
+            }
+            if (archived != null) {
+                // the window starts out holding nothing from before its first day
+                if (day == first) {
+                    for (int d = base; d <= first; d++)
+                        window += archived[d - base];
+                } else {
+                    window += archived[day - base];
+                    window -= archived[day - days - base];
+                }
+            }
+            totals[day - first] = window / 100.0;
+        }
+        return totals;
     }
 
     public void checkBudget(User user) {
-        if (user.getMonthlyBudget() > 0 &&
-            getTotalExpense() > user.getMonthlyBudget()) {
+        if (isOverBudget(user)) {
             System.out.println("⚠ Budget exceeded!");
         }
     }
 
-    public ArrayList<Expense> getExpenses() {
-        return expenses;
+    public boolean isOverBudget(User user) {
+        return user.getMonthlyBudget() > 0 &&
+               getTotalExpense() > user.getMonthlyBudget();
+    }
+
+    /**
+     * Live view over the store; expenses are materialized on access.
+     * Archived expenses are not included.
+     */
+    public List<Expense> getExpenses() {
+        return store.asList();
+    }
+
+    public void setExpenses(List<Expense> expenses) {
+        store.clear();
+        archive.clear();
+        for (Expense e : expenses) {
+            store.add(e);
+        }
+    }
+
+    public ExpenseStore getStore() {
+        return store;
+    }
+
+    public ExpenseArchive getArchive() {
+        return archive;
+    }
+
+    /** Reports over every expense, archived months included. */
+    public ReportEngine reports() {
+        return new ReportEngine(store, archive);
+    }
+
+    public BudgetAlertEngine getAlerts() {
+        return alerts;
+    }
+
+    /**
+     * Feeds every later change to {@code alerts}. Expenses already in the
+     * service count towards its totals but do not raise alerts themselves.
+     */
+    public void setAlerts(BudgetAlertEngine alerts, User user) {
+        this.alerts = alerts;
+        if (alerts != null) {
+            alerts.setBudget(user.getMonthlyBudget());
+            alerts.seed(store);
+        }
+    }
+
+    public ExpenseJournal getJournal() {
+        return journal;
     }
 
-    public void setExpenses(ArrayList<Expense> expenses) {
-        this.expenses = expenses;
+    public void setJournal(ExpenseJournal journal) {
+        this.journal = journal;
     }
 }
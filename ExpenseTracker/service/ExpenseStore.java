@@ -0,0 +1,537 @@
+package service;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.g1rix.javalearning.util.QuantileSketch;
+import model.Expense;
+
+/**
+ * Column-oriented storage for expenses.
+ *
+ * Each expense is one slot across three primitive arrays: the amount in
+ * fixed-point cents, the date as an epoch day and the category as an index
+ * into a small dictionary. {@link Expense} objects are only built when a
+ * caller asks for one.
+ *
+ * Running totals overall, per category and per month are adjusted on every
+ * add and remove, so they never need a scan. Amount quantiles per category
+ * are kept the same way in {@link QuantileSketch}es once the first quantile
+ * has been asked for; loading does not pay for them up front.
+ *
+ * A time index keeps slot numbers ordered by date. Expenses usually arrive in
+ * date order, so an add is normally just an append; an out-of-order add marks
+ * the index unsorted and it is re-sorted once, on the next range lookup. Range
+ * lookups binary-search it and then read only the matching slots. The re-sort
+ * is synchronized, so any number of lookups may run at once; adds and removes
+ * must still not run concurrently with anything else.
+ */
+public class ExpenseStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] cents = new long[INITIAL_CAPACITY];
+    private int[] days = new int[INITIAL_CAPACITY];
+    private short[] categories = new short[INITIAL_CAPACITY];
+    private int size;
+
+    // slot numbers ordered by (date, slot) while indexSorted is true
+    private int[] byDate = new int[INITIAL_CAPACITY];
+    private volatile boolean indexSorted = true;
+
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<String, Short> categoryIds = new HashMap<>();
+
+    private long totalCents;
+    private long[] categoryTotals = new long[4];
+    private final Map<Integer, Long> monthTotals = new HashMap<>();
+
+    // per category id, plus one over everything; null until first needed
+    private QuantileSketch[] categorySketches;
+    private QuantileSketch allSketch;
+
+    // epoch-day bounds of the month last accounted for, to skip date math
+    private int cachedMonthFirst = 1;
+    private int cachedMonthLast = 0;
+    private int cachedMonthKey;
+
+    private final List<Expense> view = new AbstractList<Expense>() {
+        @Override
+        public Expense get(int index) {
+            return ExpenseStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void add(int index, Expense expense) {
+            if (index != size)
+                throw new UnsupportedOperationException("Expenses can only be appended");
+            ExpenseStore.this.add(expense);
+        }
+
+        @Override
+        public Expense remove(int index) {
+            Expense removed = ExpenseStore.this.get(index);
+            ExpenseStore.this.remove(index);
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            ExpenseStore.this.clear();
+        }
+    };
+
+    public void add(Expense expense) {
+        add(toCents(expense.getAmount()), categoryId(expense.getCategory()),
+                (int) expense.getDate().toEpochDay());
+    }
+
+    public void add(long amountCents, short categoryId, int epochDay) {
+        if (size == cents.length)
+            grow();
+        cents[size] = amountCents;
+        categories[size] = categoryId;
+        days[size] = epochDay;
+
+        if (size > 0 && epochDay < days[byDate[size - 1]])
+            indexSorted = false;
+        byDate[size] = size;
+
+        size++;
+        account(amountCents, categoryId, epochDay);
+        if (allSketch != null)
+            sketch(amountCents, categoryId, true);
+    }
+
+    public void remove(int index) {
+        checkIndex(index);
+        account(-cents[index], categories[index], days[index]);
+        if (allSketch != null)
+            sketch(cents[index], categories[index], false);
+
+        // Removal shifts every later slot down by one, so the index entries
+        // above it are renumbered as well.
+        int pos = indexSorted ? lowerBound(days[index]) : 0;
+        while (byDate[pos] != index)
+            pos++;
+        System.arraycopy(byDate, pos + 1, byDate, pos, size - pos - 1);
+        for (int i = 0; i < size - 1; i++) {
+            if (byDate[i] > index)
+                byDate[i]--;
+        }
+
+        int tail = size - index - 1;
+        System.arraycopy(cents, index + 1, cents, index, tail);
+        System.arraycopy(categories, index + 1, categories, index, tail);
+        System.arraycopy(days, index + 1, days, index, tail);
+        size--;
+    }
+
+    /**
+     * Moves every expense dated before {@code epochDay} into {@code out} in
+     * date order and compacts the rest in one pass. Later slots are
+     * renumbered. Returns how many expenses were moved.
+     */
+    public int drainBefore(int epochDay, ExpenseBatch out) {
+        int end = lowerBound(epochDay);
+        if (end == 0)
+            return 0;
+        for (int pos = 0; pos < end; pos++) {
+            int slot = byDate[pos];
+            out.add(categoryNames.get(categories[slot]), cents[slot], days[slot]);
+            account(-cents[slot], categories[slot], days[slot]);
+            if (allSketch != null)
+                sketch(cents[slot], categories[slot], false);
+        }
+
+        int[] moved = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (days[i] < epochDay)
+                continue;
+            moved[i] = n;
+            cents[n] = cents[i];
+            days[n] = days[i];
+            categories[n] = categories[i];
+            n++;
+        }
+        for (int pos = end; pos < size; pos++)
+            byDate[pos - end] = moved[byDate[pos]];
+        size = n;
+        return end;
+    }
+
+    public void clear() {
+        size = 0;
+        indexSorted = true;
+        totalCents = 0;
+        Arrays.fill(categoryTotals, 0);
+        monthTotals.clear();
+        categorySketches = null;
+        allSketch = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Expense get(int index) {
+        checkIndex(index);
+        return Expense.of(categoryName(categories[index]), cents[index] / 100.0,
+                LocalDate.ofEpochDay(days[index]));
+    }
+
+    public long amountCents(int index) {
+        checkIndex(index);
+        return cents[index];
+    }
+
+    public int epochDay(int index) {
+        checkIndex(index);
+        return days[index];
+    }
+
+    public short categoryId(int index) {
+        checkIndex(index);
+        return categories[index];
+    }
+
+    public long totalCents() {
+        return totalCents;
+    }
+
+    public long totalCents(String category) {
+        Short id = categoryIds.get(category);
+        return id == null || id >= categoryTotals.length ? 0 : categoryTotals[id];
+    }
+
+    public long totalCents(YearMonth month) {
+        Long total = monthTotals.get(monthKey(month));
+        return total == null ? 0 : total;
+    }
+
+    /**
+     * Adds the amounts of {@code category}, or of every expense if it is
+     * null, to {@code out} as cents; {@code out} must have the default
+     * accuracy. The first call builds the sketches in one pass.
+     */
+    public synchronized void mergeAmounts(String category, QuantileSketch out) {
+        if (allSketch == null) {
+            categorySketches = new QuantileSketch[Math.max(4, categoryNames.size())];
+            allSketch = new QuantileSketch();
+            for (int i = 0; i < size; i++)
+                sketch(cents[i], categories[i], true);
+        }
+        if (category == null) {
+            out.merge(allSketch);
+            return;
+        }
+        Short id = categoryIds.get(category);
+        if (id != null && id < categorySketches.length && categorySketches[id] != null)
+            out.merge(categorySketches[id]);
+    }
+
+    private void sketch(long amountCents, short categoryId, boolean add) {
+        if (categoryId >= categorySketches.length)
+            categorySketches = Arrays.copyOf(categorySketches,
+                    Math.max(categoryId + 1, categorySketches.length * 2));
+        QuantileSketch sketch = categorySketches[categoryId];
+        if (sketch == null)
+            sketch = categorySketches[categoryId] = new QuantileSketch();
+        if (add) {
+            sketch.add(amountCents);
+            allSketch.add(amountCents);
+        } else {
+            sketch.remove(amountCents);
+            allSketch.remove(amountCents);
+        }
+    }
+
+    /** Position in date order of the first expense on or after {@code epochDay}. */
+    public int lowerBound(int epochDay) {
+        sortIndex();
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[byDate[mid]] < epochDay)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /** Slot of the expense at {@code position} in date order. */
+    public int slotByDate(int position) {
+        if (position < 0 || position >= size)
+            throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + size);
+        sortIndex();
+        return byDate[position];
+    }
+
+    /** Id of an existing category, or -1; unlike {@link #categoryId(String)} never adds one. */
+    public short findCategory(String name) {
+        Short id = categoryIds.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public short categoryId(String name) {
+        Short id = categoryIds.get(name);
+        if (id == null) {
+            if (categoryNames.size() > Short.MAX_VALUE)
+                throw new IllegalStateException("Too many categories");
+            id = (short) categoryNames.size();
+            categoryNames.add(name);
+            categoryIds.put(name, id);
+        }
+        return id;
+    }
+
+    public String categoryName(short id) {
+        return categoryNames.get(id);
+    }
+
+    public int categoryCount() {
+        return categoryNames.size();
+    }
+
+    public List<String> categoryNames() {
+        return Collections.unmodifiableList(categoryNames);
+    }
+
+    /** Copies amounts from slot {@code from} on into {@code dst}; returns how many. */
+    public int copyAmounts(int from, LongBuffer dst) {
+        int n = Math.min(dst.remaining(), size - from);
+        dst.put(cents, from, n);
+        return n;
+    }
+
+    public int copyDays(int from, IntBuffer dst) {
+        int n = Math.min(dst.remaining(), size - from);
+        dst.put(days, from, n);
+        return n;
+    }
+
+    public int copyCategories(int from, ShortBuffer dst) {
+        int n = Math.min(dst.remaining(), size - from);
+        dst.put(categories, from, n);
+        return n;
+    }
+
+    /** Copies the time index, sorted, from position {@code from} on. */
+    public int copyDateIndex(int from, IntBuffer dst) {
+        sortIndex();
+        int n = Math.min(dst.remaining(), size - from);
+        dst.put(byDate, from, n);
+        return n;
+    }
+
+    /**
+     * Replaces the contents with {@code count} expenses read column by column,
+     * as written by the copy methods above. The running totals are rebuilt in
+     * one pass; a sorted time index can be passed in, or null to sort.
+     */
+    public void load(List<String> names, int count, LongBuffer amounts, IntBuffer dates,
+                     ShortBuffer categoryColumn, IntBuffer dateIndex) {
+        clear();
+        categoryNames.clear();
+        categoryIds.clear();
+        for (String name : names)
+            categoryId(name);
+
+        int capacity = Math.max(INITIAL_CAPACITY, count);
+        cents = new long[capacity];
+        days = new int[capacity];
+        categories = new short[capacity];
+        byDate = new int[capacity];
+        amounts.get(cents, 0, count);
+        dates.get(days, 0, count);
+        categoryColumn.get(categories, 0, count);
+        size = count;
+
+        if (dateIndex != null) {
+            dateIndex.get(byDate, 0, count);
+        } else {
+            for (int i = 0; i < count; i++)
+                byDate[i] = i;
+            indexSorted = false;
+        }
+
+        if (categoryTotals.length < names.size())
+            categoryTotals = new long[names.size()];
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += cents[i];
+            categoryTotals[categories[i]] += cents[i];
+        }
+        totalCents = total;
+
+        // walk in date order so each month is one run of rows
+        int runKey = 0;
+        long runTotal = 0;
+        for (int pos = 0; pos < count; pos++) {
+            int slot = slotByDate(pos);
+            int key = monthKeyOfDay(days[slot]);
+            if (pos > 0 && key != runKey) {
+                addMonthTotal(runKey, runTotal);
+                runTotal = 0;
+            }
+            runKey = key;
+            runTotal += cents[slot];
+        }
+        if (count > 0)
+            addMonthTotal(runKey, runTotal);
+    }
+
+    private void addMonthTotal(int key, long amountCents) {
+        if (amountCents != 0)
+            monthTotals.put(key, amountCents);
+    }
+
+    /** Live {@code List} view; elements are materialized on each access. */
+    public List<Expense> asList() {
+        return view;
+    }
+
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private void account(long amountCents, short categoryId, int epochDay) {
+        totalCents += amountCents;
+        if (categoryId >= categoryTotals.length)
+            categoryTotals = Arrays.copyOf(categoryTotals,
+                    Math.max(categoryId + 1, categoryTotals.length * 2));
+        categoryTotals[categoryId] += amountCents;
+
+        int key = monthKeyOfDay(epochDay);
+        Long month = monthTotals.get(key);
+        long updated = (month == null ? 0 : month) + amountCents;
+        if (updated == 0)
+            monthTotals.remove(key);
+        else
+            monthTotals.put(key, updated);
+    }
+
+    private int monthKeyOfDay(int epochDay) {
+        if (epochDay < cachedMonthFirst || epochDay > cachedMonthLast) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            cachedMonthKey = monthKey(date.getYear(), date.getMonthValue());
+            cachedMonthFirst = (int) date.withDayOfMonth(1).toEpochDay();
+            cachedMonthLast = (int) date.withDayOfMonth(date.lengthOfMonth()).toEpochDay();
+        }
+        return cachedMonthKey;
+    }
+
+    private static int monthKey(YearMonth month) {
+        return monthKey(month.getYear(), month.getMonthValue());
+    }
+
+    private static int monthKey(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * Sorts the first {@code n} slot numbers by amount, ties in slot order.
+     */
+    public void sortByAmount(int[] slots, int n, boolean descending) {
+        quickSort(slots, 0, n - 1);
+        if (descending) {
+            for (int i = 0, j = n - 1; i < j; i++, j--) {
+                int t = slots[i];
+                slots[i] = slots[j];
+                slots[j] = t;
+            }
+        }
+    }
+
+    private boolean less(int a, int b) {
+        return cents[a] < cents[b] || (cents[a] == cents[b] && a < b);
+    }
+
+    private void quickSort(int[] s, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            // median of three as pivot
+            if (less(s[mid], s[lo])) swap(s, lo, mid);
+            if (less(s[hi], s[lo])) swap(s, lo, hi);
+            if (less(s[hi], s[mid])) swap(s, mid, hi);
+            int pivot = s[mid];
+
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (less(s[i], pivot)) i++;
+                while (less(pivot, s[j])) j--;
+                if (i <= j)
+                    swap(s, i++, j--);
+            }
+            // recurse into the smaller half to bound stack depth
+            if (j - lo < hi - i) {
+                quickSort(s, lo, j);
+                lo = i;
+            } else {
+                quickSort(s, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            int v = s[i];
+            int j = i - 1;
+            while (j >= lo && less(v, s[j])) {
+                s[j + 1] = s[j];
+                j--;
+            }
+            s[j + 1] = v;
+        }
+    }
+
+    private static void swap(int[] s, int i, int j) {
+        int t = s[i];
+        s[i] = s[j];
+        s[j] = t;
+    }
+
+    // Readers that see indexSorted set also see the sorted entries written before it.
+    private void sortIndex() {
+        if (indexSorted)
+            return;
+        synchronized (this) {
+            if (indexSorted)
+                return;
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++)
+                keys[i] = ((long) days[i] << 32) | i;
+            Arrays.sort(keys);
+            for (int i = 0; i < size; i++)
+                byDate[i] = (int) keys[i];
+            indexSorted = true;
+        }
+    }
+
+    private void grow() {
+        int capacity = cents.length * 2;
+        cents = Arrays.copyOf(cents, capacity);
+        days = Arrays.copyOf(days, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        byDate = Arrays.copyOf(byDate, capacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+}
@@ -0,0 +1,233 @@
+package service;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import model.Expense;
+import model.User;
+import util.ExpenseJournal;
+import util.FileUtil;
+
+/**
+ * One {@link ExpenseService} per user, each with its own snapshot and journal
+ * under a data directory, so users never overwrite each other's data.
+ *
+ * Every partition has its own read/write lock: operations for one user only
+ * ever wait for other operations of the same user. Partitions are looked up
+ * in a {@link ConcurrentHashMap} and loaded lazily on first use under their
+ * own lock, so loading one user's history does not hold up anyone else.
+ * All journals share a single group-commit thread.
+ */
+public class ExpenseTenants {
+
+    private final File dataDir;
+    private final ConcurrentHashMap<String, Partition> partitions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService committer = ExpenseJournal.newCommitter();
+
+    public ExpenseTenants(String dataDir) {
+        this.dataDir = new File(dataDir);
+        this.dataDir.mkdirs();
+    }
+
+    public void addExpense(String userName, Expense e) {
+        write(userName, (service, user) -> {
+            service.addExpense(e);
+            return null;
+        });
+    }
+
+    public void setBudget(String userName, double budget) {
+        write(userName, (service, user) -> {
+            service.setBudget(user, budget);
+            return null;
+        });
+    }
+
+    public double getTotalExpense(String userName) {
+        return read(userName, (service, user) -> service.getTotalExpense());
+    }
+
+    public void checkBudget(String userName) {
+        read(userName, (service, user) -> {
+            service.checkBudget(user);
+            return null;
+        });
+    }
+
+    public boolean isOverBudget(String userName) {
+        return read(userName, (service, user) -> service.isOverBudget(user));
+    }
+
+    /** Runs {@code action} with the user's partition locked for reading. */
+    public <T> T read(String userName, BiFunction<ExpenseService, User, T> action) {
+        Partition p = acquire(userName, false);
+        try {
+            return action.apply(p.service, p.user);
+        } finally {
+            p.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs {@code action} with the user's partition locked for writing, then
+     * checkpoints it if enough journal records have built up.
+     */
+    public <T> T write(String userName, BiFunction<ExpenseService, User, T> action) {
+        Partition p = acquire(userName, true);
+        try {
+            T result = action.apply(p.service, p.user);
+            FileUtil.checkpointIfDue(p.snapshotFile, p.service, p.user, p.journal);
+            return result;
+        } finally {
+            p.lock.writeLock().unlock();
+        }
+    }
+
+    public void checkpoint(String userName) {
+        Partition p = partitions.get(userName);
+        if (p == null)
+            return;
+        p.lock.writeLock().lock();
+        try {
+            if (p.loaded && !p.closed)
+                FileUtil.checkpoint(p.snapshotFile, p.service, p.user, p.journal);
+        } finally {
+            p.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checkpoints and drops the user's partition, releasing its memory and
+     * journal file. It is loaded again on next use.
+     *
+     * The partition stays in the map until it is fully closed, so a new one
+     * for the same user can never open its files while they are still being
+     * written.
+     */
+    public void close(String userName) {
+        Partition p = partitions.get(userName);
+        if (p == null)
+            return;
+        p.close();
+        partitions.remove(userName, p);
+    }
+
+    public void closeAll() {
+        for (String userName : new ArrayList<>(partitions.keySet()))
+            close(userName);
+        committer.shutdown();
+    }
+
+    public void forEach(BiConsumer<String, ExpenseService> action) {
+        partitions.forEach((name, p) -> {
+            p.lock.readLock().lock();
+            try {
+                if (p.loaded && !p.closed)
+                    action.accept(name, p.service);
+            } finally {
+                p.lock.readLock().unlock();
+            }
+        });
+    }
+
+    public List<String> openUsers() {
+        return new ArrayList<>(partitions.keySet());
+    }
+
+    // Returns the user's loaded partition with its read or write lock held.
+    // A partition closed while we waited for its lock is retried, so callers
+    // always see the partition currently in the map. Holding its lock means
+    // the close has finished, so it can be dropped from the map right away.
+    private Partition acquire(String userName, boolean forWrite) {
+        while (true) {
+            Partition p = partitions.computeIfAbsent(userName, Partition::new);
+            if (!p.loaded) {
+                p.lock.writeLock().lock();
+                try {
+                    if (!p.loaded && !p.closed)
+                        p.load();
+                } finally {
+                    p.lock.writeLock().unlock();
+                }
+            }
+
+            ReentrantReadWriteLock.ReadLock readLock = p.lock.readLock();
+            ReentrantReadWriteLock.WriteLock writeLock = p.lock.writeLock();
+            if (forWrite)
+                writeLock.lock();
+            else
+                readLock.lock();
+            if (!p.closed)
+                return p;
+            if (forWrite)
+                writeLock.unlock();
+            else
+                readLock.unlock();
+            partitions.remove(userName, p);
+        }
+    }
+
+    /**
+     * Maps a user name to a file name that is safe on any file system and
+     * distinct for distinct names: letters, digits and '-' are kept, every
+     * other UTF-8 byte is written as '_' and two hex digits.
+     */
+    static String fileNameOf(String userName) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : userName.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-')
+                sb.append(c);
+            else
+                sb.append('_').append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 15, 16));
+        }
+        return sb.toString();
+    }
+
+    private final class Partition {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final ExpenseService service = new ExpenseService();
+        final String snapshotFile;
+        final String journalFile;
+        User user;
+        ExpenseJournal journal;
+        volatile boolean loaded;
+        volatile boolean closed;
+
+        Partition(String userName) {
+            String base = new File(dataDir, fileNameOf(userName)).getPath();
+            this.snapshotFile = base + ".snap";
+            this.journalFile = base + ".journal";
+            this.user = new User(userName);
+        }
+
+        void load() {
+            journal = FileUtil.openJournal(journalFile, committer);
+            service.setJournal(journal);
+            User loadedUser = FileUtil.loadData(snapshotFile, service, journal, user);
+            if (loadedUser != null)
+                user = loadedUser;
+            loaded = true;
+        }
+
+        void close() {
+            lock.writeLock().lock();
+            try {
+                closed = true;
+                if (!loaded)
+                    return;
+                FileUtil.checkpoint(snapshotFile, service, user, journal);
+                if (journal != null)
+                    journal.close();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package service;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+
+/**
+ * Renders expenses straight from an {@link ExpenseStore} into a buffered
+ * writer, one reused line buffer per row and no {@code Expense} objects.
+ * {@link Format#TEXT} matches {@code Expense.toString()}; {@link Format#CSV}
+ * is the {@code date,category,amount} layout read by {@link ExpenseImporter}.
+ */
+public class ExpenseWriter implements Flushable {
+
+    public enum Format { TEXT, CSV }
+
+    private final Writer out;
+    private final Format format;
+    private final StringBuilder line = new StringBuilder(64);
+    private char[] chars = new char[64];
+
+    // consecutive rows usually share a date
+    private int lastDay = Integer.MIN_VALUE;
+    private String lastDate;
+
+    public ExpenseWriter(Writer out, Format format) {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+        this.format = format;
+    }
+
+    public void write(ExpenseStore store, int slot) throws IOException {
+        write(store.epochDay(slot), store.categoryName(store.categoryId(slot)), store.amountCents(slot));
+    }
+
+    /** Writes row {@code index} of {@code batch}, such as an archived expense. */
+    public void write(ExpenseBatch batch, int index) throws IOException {
+        write(batch.epochDay(index), batch.category(index), batch.amountCents(index));
+    }
+
+    private void write(int day, String category, long cents) throws IOException {
+        if (day != lastDay) {
+            lastDay = day;
+            lastDate = LocalDate.ofEpochDay(day).toString();
+        }
+
+        line.setLength(0);
+        if (format == Format.CSV) {
+            line.append(lastDate).append(',').append(category).append(',');
+            if (cents < 0) {
+                line.append('-');
+                cents = -cents;
+            }
+            line.append(cents / 100).append('.');
+            long fraction = cents % 100;
+            if (fraction < 10)
+                line.append('0');
+            line.append(fraction);
+        } else {
+            line.append(lastDate).append(" | ").append(category)
+                    .append(" | ₹").append(cents / 100.0);
+        }
+        line.append(System.lineSeparator());
+
+        int length = line.length();
+        if (length > chars.length)
+            chars = new char[length * 2];
+        line.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+    }
+
+    public void writeLine(String text) throws IOException {
+        out.write(text);
+        out.write(System.lineSeparator());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,43 @@
+package service;
+
+import java.util.Collections;
+import java.util.List;
+import exception.InvalidExpenseException;
+
+public class ImportResult {
+
+    private final long imported;
+    private final long rejected;
+    private final List<InvalidExpenseException> errors;
+    private final long elapsedMillis;
+
+    public ImportResult(long imported, long rejected,
+                        List<InvalidExpenseException> errors, long elapsedMillis) {
+        this.imported = imported;
+        this.rejected = rejected;
+        this.errors = Collections.unmodifiableList(errors);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    /** The first rejected rows; {@link #getRejected()} counts all of them. */
+    public List<InvalidExpenseException> getErrors() {
+        return errors;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return imported + " imported, " + rejected + " rejected in " + elapsedMillis + " ms";
+    }
+}
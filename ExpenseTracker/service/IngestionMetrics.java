@@ -0,0 +1,88 @@
+package service;
+
+public class IngestionMetrics {
+
+    private final long published;
+    private final long applied;
+    private final long failed;
+    private final long batches;
+    private final long rejected;
+    private final long backpressureWaits;
+    private final int queueDepth;
+    private final int maxQueueDepth;
+    private final int capacity;
+    private final long elapsedNanos;
+
+    public IngestionMetrics(long published, long applied, long failed, long batches, long rejected,
+                            long backpressureWaits, int queueDepth, int maxQueueDepth,
+                            int capacity, long elapsedNanos) {
+        this.published = published;
+        this.applied = applied;
+        this.failed = failed;
+        this.batches = batches;
+        this.rejected = rejected;
+        this.backpressureWaits = backpressureWaits;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.capacity = capacity;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    /** Expenses added to the service so far. */
+    public long getApplied() {
+        return applied;
+    }
+
+    /** Expenses in batches the service refused; they were not added. */
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    /** Offers that gave up because the buffer stayed full. */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /** Times a producer found the buffer full and had to wait. */
+    public long getBackpressureWaits() {
+        return backpressureWaits;
+    }
+
+    /** Expenses published but not yet applied. */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Applied expenses per second since the ingestor started. */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : applied * 1e9 / elapsedNanos;
+    }
+
+    public double getAverageBatchSize() {
+        return batches == 0 ? 0 : (double) applied / batches;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d applied (%.0f/s) in %d batches (avg %.1f), %d failed, "
+                        + "queue %d/%d (max %d), %d backpressure waits, %d rejected",
+                applied, getThroughput(), batches, getAverageBatchSize(), failed,
+                queueDepth, capacity, maxQueueDepth, backpressureWaits, rejected);
+    }
+}
@@ -0,0 +1,53 @@
+package service;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class MonthSummary {
+
+    private final YearMonth month;
+    private final int count;
+    private final long totalCents;
+    private final Map<String, Long> categoryCents;
+
+    public MonthSummary(YearMonth month, int count, long totalCents,
+                        Map<String, Long> categoryCents) {
+        this.month = month;
+        this.count = count;
+        this.totalCents = totalCents;
+        this.categoryCents = Collections.unmodifiableMap(new LinkedHashMap<>(categoryCents));
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getTotal() {
+        return totalCents / 100.0;
+    }
+
+    public double getTotal(String category) {
+        Long cents = categoryCents.get(category);
+        return cents == null ? 0 : cents / 100.0;
+    }
+
+    public Map<String, Long> getCategoryCents() {
+        return categoryCents;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(month).append(" | ").append(count).append(" expenses | ₹").append(getTotal());
+        for (Map.Entry<String, Long> e : categoryCents.entrySet()) {
+            sb.append("\n  ").append(e.getKey()).append(": ₹").append(e.getValue() / 100.0);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,272 @@
+package service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Category x month rollups and top spending days over an {@link ExpenseStore}
+ * and, if given, its {@link ExpenseArchive}.
+ *
+ * The date range is located with the store's time index and then split into
+ * chunks that are aggregated into dense per-chunk arrays and merged pairwise.
+ * In {@link Mode#PARALLEL} the chunks run on a {@link ForkJoinPool}; in
+ * {@link Mode#SEQUENTIAL} the same code runs as a single chunk, which makes
+ * the two easy to compare. Amounts are summed as whole cents, so sums are
+ * exact no matter how the range is split. Archived months in the range are
+ * expanded and added in one pass afterwards; categories found only in the
+ * archive come after the store's.
+ *
+ * The store and archive must not be modified while a report is running.
+ */
+public class ReportEngine {
+
+    public enum Mode { SEQUENTIAL, PARALLEL }
+
+    private static final int DEFAULT_THRESHOLD = 1 << 14;
+
+    private final ExpenseStore store;
+    private final ExpenseArchive archive;
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public ReportEngine(ExpenseStore store) {
+        this(store, null);
+    }
+
+    /** @param archive archived months to include, or null for live expenses only */
+    public ReportEngine(ExpenseStore store, ExpenseArchive archive) {
+        this(store, archive, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    public ReportEngine(ExpenseStore store, ForkJoinPool pool, int threshold) {
+        this(store, null, pool, threshold);
+    }
+
+    /**
+     * @param archive archived months to include, or null for live expenses only
+     * @param threshold number of expenses below which a chunk is not split further
+     */
+    public ReportEngine(ExpenseStore store, ExpenseArchive archive, ForkJoinPool pool, int threshold) {
+        this.store = store;
+        this.archive = archive;
+        this.pool = pool;
+        this.threshold = Math.max(1, threshold);
+    }
+
+    public RollupReport rollup(LocalDate from, LocalDate to, Mode mode) {
+        Range range = new Range(from, to);
+        int months = range.months();
+
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> ids = new HashMap<>();
+        for (short c = 0; c < store.categoryCount(); c++) {
+            ids.put(store.categoryName(c), names.size());
+            names.add(store.categoryName(c));
+        }
+        ExpenseBatch archived = archived(range);
+        for (int i = 0; i < archived.size(); i++) {
+            if (!ids.containsKey(archived.category(i))) {
+                ids.put(archived.category(i), names.size());
+                names.add(archived.category(i));
+            }
+        }
+        int categories = names.size();
+
+        boolean split = mode == Mode.PARALLEL;
+        Rollup total = run(new RollupTask(range, categories, months, split, range.lo, range.hi), mode);
+        for (int i = 0; i < archived.size(); i++) {
+            total.add(ids.get(archived.category(i)) * months
+                    + range.monthOfDay[archived.epochDay(i) - range.firstDay], archived.amountCents(i));
+        }
+        return new RollupReport(names, YearMonth.from(from), months,
+                total.count, total.sum, total.min, total.max);
+    }
+
+    /** The {@code n} days with the highest spending, highest first. */
+    public Map<LocalDate, Double> topDays(LocalDate from, LocalDate to, int n, Mode mode) {
+        Range range = new Range(from, to);
+        boolean split = mode == Mode.PARALLEL;
+        long[] totals = run(new DayTask(range, split, range.lo, range.hi), mode);
+        if (archive != null)
+            archive.addDailyCents(range.firstDay, range.lastDay, totals);
+
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(1, n),
+                (a, b) -> Long.compare(totals[a], totals[b]));
+        for (int d = 0; d < totals.length; d++) {
+            if (totals[d] == 0)
+                continue;
+            if (top.size() < n) {
+                top.add(d);
+            } else if (n > 0 && totals[d] > totals[top.peek()]) {
+                top.poll();
+                top.add(d);
+            }
+        }
+
+        Integer[] days = top.toArray(new Integer[0]);
+        Arrays.sort(days, (a, b) -> Long.compare(totals[b], totals[a]));
+        Map<LocalDate, Double> result = new LinkedHashMap<>();
+        for (int d : days)
+            result.put(LocalDate.ofEpochDay(range.firstDay + d), totals[d] / 100.0);
+        return result;
+    }
+
+    private <T> T run(RecursiveTask<T> task, Mode mode) {
+        return mode == Mode.PARALLEL ? pool.invoke(task) : task.invoke();
+    }
+
+    private ExpenseBatch archived(Range range) {
+        ExpenseBatch batch = new ExpenseBatch(16);
+        if (archive != null)
+            archive.rowsBetween(range.firstDay, range.lastDay, null, batch);
+        return batch;
+    }
+
+    // Positions in the time index covering [from, to], plus a day -> month cell lookup.
+    private final class Range {
+        final int firstDay;
+        final int lastDay;
+        final int lo;
+        final int hi;
+        final int[] monthOfDay;
+
+        Range(LocalDate from, LocalDate to) {
+            firstDay = (int) from.toEpochDay();
+            lastDay = (int) to.toEpochDay();
+            lo = store.lowerBound(firstDay);
+            hi = Math.max(lo, store.lowerBound(lastDay + 1));
+
+            monthOfDay = new int[Math.max(0, lastDay - firstDay + 1)];
+            YearMonth first = YearMonth.from(from);
+            for (int d = 0; d < monthOfDay.length; d++) {
+                LocalDate date = LocalDate.ofEpochDay(firstDay + d);
+                monthOfDay[d] = (date.getYear() - first.getYear()) * 12
+                        + date.getMonthValue() - first.getMonthValue();
+            }
+        }
+
+        int months() {
+            return monthOfDay.length == 0 ? 0 : monthOfDay[monthOfDay.length - 1] + 1;
+        }
+    }
+
+    private static final class Rollup {
+        final long[] count;
+        final long[] sum;
+        final long[] min;
+        final long[] max;
+
+        Rollup(int cells) {
+            count = new long[cells];
+            sum = new long[cells];
+            min = new long[cells];
+            max = new long[cells];
+            Arrays.fill(min, Long.MAX_VALUE);
+            Arrays.fill(max, Long.MIN_VALUE);
+        }
+
+        void add(int cell, long cents) {
+            count[cell]++;
+            sum[cell] += cents;
+            if (cents < min[cell])
+                min[cell] = cents;
+            if (cents > max[cell])
+                max[cell] = cents;
+        }
+
+        Rollup merge(Rollup other) {
+            for (int i = 0; i < count.length; i++) {
+                count[i] += other.count[i];
+                sum[i] += other.sum[i];
+                min[i] = Math.min(min[i], other.min[i]);
+                max[i] = Math.max(max[i], other.max[i]);
+            }
+            return this;
+        }
+    }
+
+    private final class RollupTask extends RecursiveTask<Rollup> {
+        private static final long serialVersionUID = 1L;
+
+        private final Range range;
+        private final int categories;
+        private final int months;
+        private final boolean split;
+        private final int lo;
+        private final int hi;
+
+        RollupTask(Range range, int categories, int months, boolean split, int lo, int hi) {
+            this.range = range;
+            this.categories = categories;
+            this.months = months;
+            this.split = split;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Rollup compute() {
+            if (split && hi - lo > threshold) {
+                int mid = (lo + hi) >>> 1;
+                RollupTask left = new RollupTask(range, categories, months, true, lo, mid);
+                left.fork();
+                Rollup right = new RollupTask(range, categories, months, true, mid, hi).compute();
+                return left.join().merge(right);
+            }
+
+            Rollup r = new Rollup(categories * months);
+            for (int pos = lo; pos < hi; pos++) {
+                int slot = store.slotByDate(pos);
+                r.add(store.categoryId(slot) * months + range.monthOfDay[store.epochDay(slot) - range.firstDay],
+                        store.amountCents(slot));
+            }
+            return r;
+        }
+    }
+
+    private final class DayTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Range range;
+        private final boolean split;
+        private final int lo;
+        private final int hi;
+
+        DayTask(Range range, boolean split, int lo, int hi) {
+            this.range = range;
+            this.split = split;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (split && hi - lo > threshold) {
+                int mid = (lo + hi) >>> 1;
+                DayTask left = new DayTask(range, true, lo, mid);
+                left.fork();
+                long[] right = new DayTask(range, true, mid, hi).compute();
+                long[] totals = left.join();
+                for (int d = 0; d < totals.length; d++)
+                    totals[d] += right[d];
+                return totals;
+            }
+
+            long[] totals = new long[range.monthOfDay.length];
+            for (int pos = lo; pos < hi; pos++) {
+                int slot = store.slotByDate(pos);
+                totals[store.epochDay(slot) - range.firstDay] += store.amountCents(slot);
+            }
+            return totals;
+        }
+    }
+}
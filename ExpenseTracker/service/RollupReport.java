@@ -0,0 +1,95 @@
+package service;
+
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Count, total, min, max and average per category and month.
+ */
+public class RollupReport {
+
+    private final List<String> categories;
+    private final YearMonth firstMonth;
+    private final int months;
+    private final long[] count;
+    private final long[] sum;
+    private final long[] min;
+    private final long[] max;
+
+    RollupReport(List<String> categories, YearMonth firstMonth, int months,
+                 long[] count, long[] sum, long[] min, long[] max) {
+        this.categories = categories;
+        this.firstMonth = firstMonth;
+        this.months = months;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public YearMonth getFirstMonth() {
+        return firstMonth;
+    }
+
+    public int getMonthCount() {
+        return months;
+    }
+
+    public long getCount(String category, YearMonth month) {
+        int cell = cell(category, month);
+        return cell < 0 ? 0 : count[cell];
+    }
+
+    public double getTotal(String category, YearMonth month) {
+        int cell = cell(category, month);
+        return cell < 0 ? 0 : sum[cell] / 100.0;
+    }
+
+    public double getMin(String category, YearMonth month) {
+        int cell = cell(category, month);
+        return cell < 0 || count[cell] == 0 ? 0 : min[cell] / 100.0;
+    }
+
+    public double getMax(String category, YearMonth month) {
+        int cell = cell(category, month);
+        return cell < 0 || count[cell] == 0 ? 0 : max[cell] / 100.0;
+    }
+
+    public double getAverage(String category, YearMonth month) {
+        int cell = cell(category, month);
+        return cell < 0 || count[cell] == 0 ? 0 : sum[cell] / 100.0 / count[cell];
+    }
+
+    private int cell(String category, YearMonth month) {
+        int c = categories.indexOf(category);
+        long m = firstMonth.until(month, ChronoUnit.MONTHS);
+        if (c < 0 || m < 0 || m >= months)
+            return -1;
+        return c * months + (int) m;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < categories.size(); c++) {
+            for (int m = 0; m < months; m++) {
+                int cell = c * months + m;
+                if (count[cell] == 0)
+                    continue;
+                sb.append(firstMonth.plusMonths(m)).append(" | ")
+                        .append(categories.get(c)).append(" | count ").append(count[cell])
+                        .append(" | total ₹").append(sum[cell] / 100.0)
+                        .append(" | min ₹").append(min[cell] / 100.0)
+                        .append(" | max ₹").append(max[cell] / 100.0)
+                        .append(" | avg ₹").append(Math.round(sum[cell] / (double) count[cell]) / 100.0)
+                        .append('\n');
+            }
+        }
+        return sb.length() == 0 ? "No expenses found." : sb.toString().trim();
+    }
+}
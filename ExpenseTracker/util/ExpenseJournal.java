@@ -0,0 +1,269 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import model.Expense;
+import model.User;
+import service.ExpenseBatch;
+
+/**
+ * Append-only log of changes made since the last snapshot.
+ *
+ * Every record has the same size so an append is a single positional write.
+ * Records are fsynced in groups: at most once per commit interval, so a crash
+ * loses no more than the last interval. A checkpoint writes the snapshot and
+ * then truncates the journal; records carry a sequence number so a journal
+ * that survived a crash between those two steps is not replayed twice.
+ */
+public class ExpenseJournal implements Closeable {
+
+    private static final byte EXPENSE = 1;
+    private static final byte BUDGET = 2;
+    private static final byte REMOVE = 3;
+
+    private static final int TEXT_WIDTH = 16;
+    // type + sequence + amount + category + date + crc
+    static final int RECORD_SIZE = 1 + 8 + 8 + TEXT_WIDTH + TEXT_WIDTH + 4;
+
+    private final FileChannel channel;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final long commitIntervalMillis;
+    private final ScheduledExecutorService committer;
+    private final boolean ownsCommitter;
+    private final ScheduledFuture<?> commitTask;
+
+    private long sequence;
+    private long appendedSinceCheckpoint;
+    private boolean dirty;
+
+    public ExpenseJournal(String fileName, long commitIntervalMillis) throws IOException {
+        this(fileName, commitIntervalMillis, null);
+    }
+
+    /**
+     * @param committer scheduler for group commits, shared between journals;
+     *                  null to give this journal its own thread
+     */
+    public ExpenseJournal(String fileName, long commitIntervalMillis,
+                          ScheduledExecutorService committer) throws IOException {
+        this.channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.commitIntervalMillis = commitIntervalMillis;
+
+        long end = scan();
+        channel.truncate(end);
+        channel.position(end);
+
+        if (commitIntervalMillis <= 0) {
+            this.committer = null;
+            this.ownsCommitter = false;
+            this.commitTask = null;
+            return;
+        }
+        this.ownsCommitter = committer == null;
+        this.committer = committer != null ? committer : newCommitter();
+        this.commitTask = this.committer.scheduleWithFixedDelay(this::commit,
+                commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static ScheduledExecutorService newCommitter() {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "expense-journal-commit");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public synchronized void append(Expense expense) {
+        write(EXPENSE, Math.round(expense.getAmount() * 100),
+                expense.getCategory(), expense.getDate().toString());
+    }
+
+    /** Appends every expense in the batch with a single write. */
+    public synchronized void append(ExpenseBatch batch) {
+        int n = batch.size();
+        if (n == 0)
+            return;
+        ByteBuffer buf = ByteBuffer.allocate(n * RECORD_SIZE);
+        for (int i = 0; i < n; i++) {
+            encode(buf, EXPENSE, sequence + 1 + i, batch.amountCents(i), batch.category(i),
+                    LocalDate.ofEpochDay(batch.epochDay(i)).toString());
+        }
+        buf.flip();
+        writeRecords(buf, n);
+    }
+
+    public synchronized void appendBudget(double monthlyBudget) {
+        write(BUDGET, Math.round(monthlyBudget * 100), "", "");
+    }
+
+    public synchronized void appendRemoval(int index) {
+        write(REMOVE, index, "", "");
+    }
+
+    /**
+     * Applies every record newer than {@code afterSequence} to the given
+     * expenses and user. Returns the number of records applied.
+     */
+    public synchronized int replay(long afterSequence, List<Expense> expenses, User user) {
+        int applied = 0;
+        try {
+            ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE);
+            for (long pos = 0; pos + RECORD_SIZE <= channel.size(); pos += RECORD_SIZE) {
+                buf.clear();
+                channel.read(buf, pos);
+                buf.flip();
+
+                byte type = buf.get();
+                long seq = buf.getLong();
+                long value = buf.getLong();
+                String category = readText(buf);
+                String date = readText(buf);
+
+                if (seq <= afterSequence)
+                    continue;
+
+                if (type == EXPENSE) {
+                    expenses.add(Expense.of(category, value / 100.0, Expense.parseDate(date)));
+                } else if (type == BUDGET) {
+                    user.setMonthlyBudget(value / 100.0);
+                } else if (type == REMOVE) {
+                    expenses.remove((int) value);
+                }
+                applied++;
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading journal.");
+        }
+        sequence = Math.max(sequence, afterSequence);
+        return applied;
+    }
+
+    /** Forces appended records to disk if any were written since the last commit. */
+    public synchronized void commit() {
+        if (!dirty)
+            return;
+        try {
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            System.out.println("Error committing journal.");
+        }
+    }
+
+    /** Drops all records; called once they are covered by a snapshot. */
+    public synchronized void truncate() {
+        try {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(false);
+            dirty = false;
+            appendedSinceCheckpoint = 0;
+        } catch (IOException e) {
+            System.out.println("Error compacting journal.");
+        }
+    }
+
+    public synchronized long lastSequence() {
+        return sequence;
+    }
+
+    public synchronized long appendedSinceCheckpoint() {
+        return appendedSinceCheckpoint;
+    }
+
+    @Override
+    public void close() {
+        if (commitTask != null)
+            commitTask.cancel(false);
+        if (ownsCommitter)
+            committer.shutdown();
+        commit();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing journal.");
+        }
+    }
+
+    private void write(byte type, long amount, String category, String date) {
+        record.clear();
+        encode(record, type, sequence + 1, amount, category, date);
+        record.flip();
+        writeRecords(record, 1);
+    }
+
+    private void encode(ByteBuffer buf, byte type, long seq, long amount, String category,
+                        String date) {
+        int start = buf.position();
+        buf.put(type);
+        buf.putLong(seq);
+        buf.putLong(amount);
+        putText(buf, category);
+        putText(buf, date);
+        crc.reset();
+        crc.update(buf.array(), start, RECORD_SIZE - 4);
+        buf.putInt((int) crc.getValue());
+    }
+
+    private void writeRecords(ByteBuffer buf, int records) {
+        try {
+            while (buf.hasRemaining())
+                channel.write(buf);
+            sequence += records;
+            appendedSinceCheckpoint += records;
+            dirty = true;
+            if (commitIntervalMillis <= 0)
+                commit();
+        } catch (IOException e) {
+            System.out.println("Error writing journal.");
+        }
+    }
+
+    // Returns the length of the intact prefix; a torn last record is dropped.
+    private long scan() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE);
+        long pos = 0;
+        while (pos + RECORD_SIZE <= channel.size()) {
+            buf.clear();
+            channel.read(buf, pos);
+            crc.reset();
+            crc.update(buf.array(), 0, RECORD_SIZE - 4);
+            if ((int) crc.getValue() != buf.getInt(RECORD_SIZE - 4))
+                break;
+            sequence = buf.getLong(1);
+            pos += RECORD_SIZE;
+        }
+        return pos;
+    }
+
+    private static void putText(ByteBuffer buf, String text) {
+        byte[] bytes = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        int len = Math.min(bytes.length, TEXT_WIDTH);
+        buf.put(bytes, 0, len);
+        for (int i = len; i < TEXT_WIDTH; i++)
+            buf.put((byte) 0);
+    }
+
+    private static String readText(ByteBuffer buf) {
+        byte[] bytes = new byte[TEXT_WIDTH];
+        buf.get(bytes);
+        int len = 0;
+        while (len < TEXT_WIDTH && bytes[len] != 0)
+            len++;
+        return new String(bytes, 0, len, StandardCharsets.UTF_8);
+    }
+}
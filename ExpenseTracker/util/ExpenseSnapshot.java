@@ -0,0 +1,243 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import model.User;
+import service.ExpenseArchive;
+import service.ExpenseStore;
+
+/**
+ * Binary snapshot of an {@link ExpenseStore} and its {@link User}.
+ *
+ * <pre>
+ * header   64 bytes: magic, version, count, journal sequence, budget,
+ *          category count, names length, archive length (version 2 on),
+ *          body CRC32, header CRC32
+ * names    user name then category names, each a short length + UTF-8,
+ *          padded to 8 bytes
+ * amounts  count x long  (cents)
+ * days     count x int   (epoch day)
+ * index    count x int   (slots in date order)
+ * category count x short (dictionary id)
+ * archive  compressed blocks of closed months (version 2 on)
+ * </pre>
+ *
+ * The columns are fixed width, so loading maps each section and copies it
+ * into the store in bulk; no per-expense decoding or object allocation
+ * happens until an expense is actually read. Archive blocks stay compressed.
+ * Version 1 files, without an archive, are still read.
+ */
+public class ExpenseSnapshot {
+
+    private static final int MAGIC = 0x45585053; // "EXPS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int CHUNK = 1 << 20;
+
+    private final long journalSequence;
+    private final User user;
+
+    private ExpenseSnapshot(long journalSequence, User user) {
+        this.journalSequence = journalSequence;
+        this.user = user;
+    }
+
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public static void write(Path file, ExpenseStore store, ExpenseArchive archive, User user,
+                             long journalSequence) throws IOException {
+        int count = store.size();
+        List<String> categories = store.categoryNames();
+
+        ByteBuffer names = encodeNames(user.getName(), categories);
+        CRC32 crc = new CRC32();
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.position(HEADER_SIZE);
+            writeFully(ch, names, crc);
+
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+            for (int from = 0; from < count; ) {
+                buf.clear();
+                int n = store.copyAmounts(from, buf.asLongBuffer());
+                buf.limit(n * 8);
+                writeFully(ch, buf, crc);
+                from += n;
+            }
+            for (int from = 0; from < count; ) {
+                buf.clear();
+                int n = store.copyDays(from, buf.asIntBuffer());
+                buf.limit(n * 4);
+                writeFully(ch, buf, crc);
+                from += n;
+            }
+            for (int from = 0; from < count; ) {
+                buf.clear();
+                int n = store.copyDateIndex(from, buf.asIntBuffer());
+                buf.limit(n * 4);
+                writeFully(ch, buf, crc);
+                from += n;
+            }
+            for (int from = 0; from < count; ) {
+                buf.clear();
+                int n = store.copyCategories(from, buf.asShortBuffer());
+                buf.limit(n * 2);
+                writeFully(ch, buf, crc);
+                from += n;
+            }
+
+            ByteBuffer archived = ByteBuffer.allocate(archive.encodedSize());
+            archive.write(archived);
+            archived.flip();
+            writeFully(ch, archived, crc);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(count);
+            header.putLong(journalSequence);
+            header.putDouble(user.getMonthlyBudget());
+            header.putInt(categories.size());
+            header.putInt(names.limit());
+            header.putLong(archived.limit());
+            header.putInt((int) crc.getValue());
+            CRC32 headerCrc = new CRC32();
+            headerCrc.update(header.array(), 0, header.position());
+            header.putInt((int) headerCrc.getValue());
+            header.clear();
+            ch.position(0);
+            writeFully(ch, header, null);
+            ch.force(true);
+        }
+    }
+
+    /**
+     * Maps {@code file}, verifies it and loads it into {@code store} and
+     * {@code archive}.
+     *
+     * @throws IOException if the file is unreadable, from another format
+     *                     version, or fails its checksum
+     */
+    public static ExpenseSnapshot read(Path file, ExpenseStore store, ExpenseArchive archive)
+            throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && ch.read(header) >= 0) {
+                // keep reading
+            }
+            if (header.hasRemaining())
+                throw new IOException("Snapshot header is truncated");
+            header.flip();
+
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not an expense snapshot");
+            int version = header.getInt();
+            if (version < 1 || version > VERSION)
+                throw new IOException("Unsupported snapshot version " + version);
+            long count = header.getLong();
+            long journalSequence = header.getLong();
+            double budget = header.getDouble();
+            int categoryCount = header.getInt();
+            int namesLength = header.getInt();
+            long archiveLength = version >= 2 ? header.getLong() : 0;
+            int bodyCrc = header.getInt();
+            CRC32 headerCrc = new CRC32();
+            headerCrc.update(header.array(), 0, header.position());
+            if ((int) headerCrc.getValue() != header.getInt())
+                throw new IOException("Snapshot header checksum mismatch");
+            if (count < 0 || count > Integer.MAX_VALUE || namesLength < 0
+                    || archiveLength < 0 || archiveLength > Integer.MAX_VALUE)
+                throw new IOException("Snapshot header is corrupt");
+
+            int n = (int) count;
+            long expected = HEADER_SIZE + namesLength + 18L * n + archiveLength;
+            if (ch.size() != expected)
+                throw new IOException("Snapshot size mismatch");
+
+            long pos = HEADER_SIZE;
+            MappedByteBuffer names = map(ch, pos, namesLength);
+            MappedByteBuffer amounts = map(ch, pos += namesLength, 8L * n);
+            MappedByteBuffer days = map(ch, pos += 8L * n, 4L * n);
+            MappedByteBuffer index = map(ch, pos += 4L * n, 4L * n);
+            MappedByteBuffer categories = map(ch, pos += 4L * n, 2L * n);
+            MappedByteBuffer archived = map(ch, pos + 2L * n, archiveLength);
+
+            CRC32 crc = new CRC32();
+            crc.update(names.duplicate());
+            crc.update(amounts.duplicate());
+            crc.update(days.duplicate());
+            crc.update(index.duplicate());
+            crc.update(categories.duplicate());
+            crc.update(archived.duplicate());
+            if ((int) crc.getValue() != bodyCrc)
+                throw new IOException("Snapshot checksum mismatch");
+
+            User user = new User(readName(names));
+            user.setMonthlyBudget(budget);
+            List<String> categoryNames = new ArrayList<>(categoryCount);
+            for (int i = 0; i < categoryCount; i++)
+                categoryNames.add(readName(names));
+
+            store.load(categoryNames, n, amounts.asLongBuffer(), days.asIntBuffer(),
+                    categories.asShortBuffer(), index.asIntBuffer());
+            if (version >= 2)
+                archive.read(archived);
+            else
+                archive.clear();
+            return new ExpenseSnapshot(journalSequence, user);
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel ch, long position, long length)
+            throws IOException {
+        return ch.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    private static ByteBuffer encodeNames(String userName, List<String> categories) {
+        List<byte[]> encoded = new ArrayList<>();
+        encoded.add((userName == null ? "" : userName).getBytes(StandardCharsets.UTF_8));
+        for (String c : categories)
+            encoded.add(c.getBytes(StandardCharsets.UTF_8));
+
+        int length = 0;
+        for (byte[] b : encoded)
+            length += 2 + b.length;
+        length = (length + 7) & ~7;
+
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        for (byte[] b : encoded) {
+            buf.putShort((short) b.length);
+            buf.put(b);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    private static String readName(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort() & 0xFFFF];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, CRC32 crc) throws IOException {
+        if (crc != null)
+            crc.update(buf.duplicate());
+        while (buf.hasRemaining())
+            ch.write(buf);
+    }
+}
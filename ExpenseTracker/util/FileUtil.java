@@ -1,34 +1,157 @@
 package util;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
 import model.Expense;
 import model.User;
+import service.ExpenseService;
 
 public class FileUtil {
 
-    private static final String FILE_NAME = "expense_data.ser";
+    private static final String FILE_NAME = "expense_data.snap";
+    // Serialized format used before the snapshot; migrated once on startup.
+    private static final String LEGACY_FILE_NAME = "expense_data.ser";
+    private static final String JOURNAL_NAME = "expense_data.journal";
 
-    public static void saveData(ArrayList<Expense> expenses, User user) {
-        try (ObjectOutputStream oos =
-                     new ObjectOutputStream(new FileOutputStream(FILE_NAME))) {
-            oos.writeObject(expenses);
-            oos.writeObject(user);
+    // Group-commit window: the most a crash can lose. 0 syncs every record.
+    private static final long COMMIT_INTERVAL_MS =
+            Long.getLong("expense.journal.commitMs", 1000);
+    // Journal records accumulated before the snapshot is rewritten.
+    private static final long CHECKPOINT_RECORDS =
+            Long.getLong("expense.journal.checkpointRecords", 10000);
+
+    public static ExpenseJournal openJournal() {
+        return openJournal(JOURNAL_NAME, null);
+    }
+
+    public static ExpenseJournal openJournal(String fileName, ScheduledExecutorService committer) {
+        try {
+            return new ExpenseJournal(fileName, COMMIT_INTERVAL_MS, committer);
+        } catch (IOException e) {
+            System.out.println("Error opening journal.");
+            return null;
+        }
+    }
+
+    public static boolean saveData(ExpenseService service, User user, long journalSequence) {
+        return saveData(FILE_NAME, service, user, journalSequence);
+    }
+
+    public static boolean saveData(String fileName, ExpenseService service, User user,
+                                   long journalSequence) {
+        Path tmp = Paths.get(fileName + ".tmp");
+        try {
+            ExpenseSnapshot.write(tmp, service.getStore(), service.getArchive(), user,
+                    journalSequence);
+            Files.move(tmp, Paths.get(fileName),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
         } catch (IOException e) {
             System.out.println("Error saving data.");
+            return false;
+        }
+    }
+
+    /**
+     * Writes a full snapshot and compacts the journal behind it.
+     */
+    public static void checkpoint(ExpenseService service, User user, ExpenseJournal journal) {
+        checkpoint(FILE_NAME, service, user, journal);
+    }
+
+    public static void checkpoint(String fileName, ExpenseService service, User user,
+                                  ExpenseJournal journal) {
+        if (journal == null) {
+            saveData(fileName, service, user, 0);
+            return;
         }
+        journal.commit();
+        if (saveData(fileName, service, user, journal.lastSequence()))
+            journal.truncate();
     }
 
-    @SuppressWarnings("unchecked")
-    public static Object[] loadData() {
-        try (ObjectInputStream ois =
-                     new ObjectInputStream(new FileInputStream(FILE_NAME))) {
-            ArrayList<Expense> expenses =
-                    (ArrayList<Expense>) ois.readObject();
-            User user = (User) ois.readObject();
-            return new Object[]{expenses, user};
+    public static void checkpointIfDue(ExpenseService service, User user, ExpenseJournal journal) {
+        checkpointIfDue(FILE_NAME, service, user, journal);
+    }
+
+    public static void checkpointIfDue(String fileName, ExpenseService service, User user,
+                                       ExpenseJournal journal) {
+        if (journal != null && journal.appendedSinceCheckpoint() >= CHECKPOINT_RECORDS)
+            checkpoint(fileName, service, user, journal);
+    }
+
+    /**
+     * Loads the last snapshot into {@code service} and replays the journal
+     * records written after it. {@code user} is used when only a journal
+     * exists. Returns the loaded user, or null if there was nothing to load.
+     */
+    public static User loadData(ExpenseService service, ExpenseJournal journal, User user) {
+        if (!new File(FILE_NAME).exists() && new File(LEGACY_FILE_NAME).exists())
+            migrateLegacy();
+        return loadData(FILE_NAME, service, journal, user);
+    }
+
+    public static User loadData(String fileName, ExpenseService service, ExpenseJournal journal,
+                                User user) {
+        long journalSequence = 0;
+        boolean loaded = false;
+
+        if (new File(fileName).exists()) {
+            try {
+                ExpenseSnapshot snapshot = ExpenseSnapshot.read(Paths.get(fileName),
+                        service.getStore(), service.getArchive());
+                user = snapshot.getUser();
+                journalSequence = snapshot.getJournalSequence();
+                loaded = true;
+            } catch (IOException e) {
+                // keep the damaged file for inspection instead of overwriting it on exit
+                System.out.println("Error loading data: " + e.getMessage());
+                new File(fileName).renameTo(new File(fileName + ".corrupt"));
+            }
+        }
+
+        if (journal != null && journal.replay(journalSequence, service.getExpenses(), user) > 0)
+            loaded = true;
+
+        return loaded ? user : null;
+    }
+
+    /**
+     * One-time conversion of expense_data.ser to the snapshot format. The old
+     * file is kept, renamed to expense_data.ser.migrated. Its journal
+     * sequence carries over so records already in it are not replayed.
+     */
+    private static void migrateLegacy() {
+        ArrayList<Expense> expenses;
+        User legacyUser;
+        long journalSequence = 0;
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(LEGACY_FILE_NAME)))) {
+            @SuppressWarnings("unchecked")
+            ArrayList<Expense> read = (ArrayList<Expense>) ois.readObject();
+            expenses = read;
+            legacyUser = (User) ois.readObject();
+            try {
+                journalSequence = ois.readLong();
+            } catch (EOFException e) {
+                // written before the journal existed
+            }
         } catch (Exception e) {
-            return null;
+            System.out.println("Error migrating " + LEGACY_FILE_NAME + ".");
+            return;
+        }
+
+        // the old file is closed by now, so it can be renamed on every platform
+        ExpenseService migrated = new ExpenseService();
+        migrated.setExpenses(expenses);
+        if (saveData(FILE_NAME, migrated, legacyUser, journalSequence)) {
+            new File(LEGACY_FILE_NAME).renameTo(new File(LEGACY_FILE_NAME + ".migrated"));
+            System.out.println("Migrated " + expenses.size() + " expenses to " + FILE_NAME + ".");
         }
     }
 }
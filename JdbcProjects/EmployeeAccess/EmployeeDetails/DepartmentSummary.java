@@ -0,0 +1,64 @@
+package com.g1rix.javalearning.EmployeeDetails;
+
+/** Headcount and payroll figures for one department; a missing salary counts as 0. */
+public class DepartmentSummary {
+
+    private final String department;
+    private final int count;
+    private final long totalSalary;
+    private final int minSalary;
+    private final int maxSalary;
+
+    public DepartmentSummary(String department, int count, long totalSalary, int minSalary, int maxSalary) {
+        this.department = department;
+        this.count = count;
+        this.totalSalary = totalSalary;
+        this.minSalary = minSalary;
+        this.maxSalary = maxSalary;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /** Total payroll. */
+    public long getTotalSalary() {
+        return totalSalary;
+    }
+
+    public int getMinSalary() {
+        return minSalary;
+    }
+
+    public int getMaxSalary() {
+        return maxSalary;
+    }
+
+    public double getAverageSalary() {
+        return count == 0 ? 0 : (double) totalSalary / count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof DepartmentSummary))
+            return false;
+        DepartmentSummary other = (DepartmentSummary) o;
+        return department.equals(other.department) && count == other.count && totalSalary == other.totalSalary
+                && minSalary == other.minSalary && maxSalary == other.maxSalary;
+    }
+
+    @Override
+    public int hashCode() {
+        return department.hashCode() * 31 + Long.hashCode(totalSalary) + count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d employees, min %d, max %d, avg %.2f, payroll %d",
+                department, count, minSalary, maxSalary, getAverageSalary(), totalSalary);
+    }
+}
@@ -1,11 +1,37 @@
 package com.g1rix.javalearning.EmployeeDetails;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Scanner;
+import java.util.function.BooleanSupplier;
+import javax.sql.DataSource;
+import com.g1rix.javalearning.jdbc.BulkLoader;
+import com.g1rix.javalearning.jdbc.CacheMetrics;
+import com.g1rix.javalearning.jdbc.KeysetReader;
+import com.g1rix.javalearning.jdbc.LoadResult;
+import com.g1rix.javalearning.jdbc.ReadCache;
+import com.g1rix.javalearning.util.BatchRunner;
 
 public class EmployeeDetails {
 
-    public static void addEmployee(Connection connect, Scanner scan) {
+    private static final String COLUMNS = "id, empname, salary, department";
+    private static final KeysetReader BY_ID = new KeysetReader("EMPLOYEERECORD", COLUMNS,
+            new String[] { "id" }, false);
+    // Missing salaries sort last, as 0; see idx_salary_id in EmployeeSchema.sql.
+    private static final KeysetReader BY_SALARY = new KeysetReader("EMPLOYEERECORD", COLUMNS,
+            new String[] { "COALESCE(salary, 0)", "id" }, true);
+    private static final ReadCache<String, List<Object[]>> BY_DEPARTMENT = new ReadCache<>("Department cache");
+    private static final BulkLoader LOADER = new BulkLoader("EMPLOYEERECORD",
+            new String[] { "id", "empname", "salary", "department" },
+            new Class<?>[] { Integer.class, String.class, Integer.class, String.class });
+
+    public static void addEmployee(DataSource pool, Scanner scan) {
         try {
             System.out.println("Insert Employee details");
 
@@ -21,45 +47,91 @@ public class EmployeeDetails {
             System.out.print("Enter Department: ");
             String dept = scan.next();
 
-            String query = "INSERT INTO EMPLOYEERECORD VALUES(?,?,?,?)";
-            PreparedStatement ps = connect.prepareStatement(query);
+            addEmployee(pool, id, name, salary, dept);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static void addEmployee(DataSource pool, int id, String name, int salary, String dept) throws SQLException {
+        int row = insertEmployee(pool, id, name, salary, dept);
+        System.out.println(row + " record inserted!");
+    }
+
+    static int insertEmployee(DataSource pool, int id, String name, int salary, String dept) throws SQLException {
+        String query = "INSERT INTO EMPLOYEERECORD VALUES(?,?,?,?)";
+        try (Connection connect = pool.getConnection();
+             PreparedStatement ps = connect.prepareStatement(query)) {
 
             ps.setInt(1, id);
             ps.setString(2, name);
             ps.setInt(3, salary);
             ps.setString(4, dept);
 
-            int row = ps.executeUpdate();
-            System.out.println(row + " record inserted!");
-
-        } catch (Exception e) {
-            e.printStackTrace();
+            SalaryStats.writing();
+            try {
+                int row = ps.executeUpdate();
+                if (row > 0) {
+                    SalaryStats.added(dept, salary);
+                    BY_DEPARTMENT.invalidate(dept);
+                }
+                return row;
+            } finally {
+                SalaryStats.written();
+            }
         }
     }
 
     
-    public static void viewEmployee(Connection connect) {
+    public static void viewEmployee(DataSource pool) {
         try {
-            String query = "SELECT * FROM EMPLOYEERECORD";
-            PreparedStatement ps = connect.prepareStatement(query);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                System.out.println(
-                        "Id: " + rs.getInt("id") +
-                        " | EMPName: " + rs.getString("EMPname") +
-                        " | Salary: " + rs.getInt("salary") +
-                        " | Department: " + rs.getString("department")
-                );
-            }
-
+            printEmployees(pool);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    
-    public static void updateSalary(Connection connect, Scanner scan) {
+    static void printEmployees(DataSource pool) throws SQLException {
+        BY_ID.forEach(pool, EmployeeDetails::printEmployee);
+    }
+
+    /** Prints up to {@code count} employees with an id above {@code afterId}, and where the next page starts. */
+    public static void viewEmployee(DataSource pool, int afterId, int count) throws SQLException {
+        Object[] last = BY_ID.page(pool, new Object[] { afterId }, count,
+                EmployeeDetails::printEmployee);
+        if (last != null)
+            System.out.println("Next page: page " + last[0] + " " + count);
+    }
+
+    /** Up to {@code count} employees with an id above {@code afterId}, as id, name, salary, department. */
+    static List<Object[]> employees(DataSource pool, int afterId, int count) throws SQLException {
+        List<Object[]> employees = new ArrayList<>();
+        BY_ID.page(pool, new Object[] { afterId }, count, rs -> employees.add(row(rs)));
+        return employees;
+    }
+
+    /** The {@code count} best paid employees, highest first. */
+    static List<Object[]> highestPaid(DataSource pool, int count) throws SQLException {
+        List<Object[]> employees = new ArrayList<>();
+        BY_SALARY.page(pool, null, count, rs -> employees.add(row(rs)));
+        return employees;
+    }
+
+    private static Object[] row(ResultSet rs) throws SQLException {
+        return new Object[] { rs.getInt("id"), rs.getString("EMPname"), rs.getInt("salary"), rs.getString("department") };
+    }
+
+    private static void printEmployee(ResultSet rs) throws SQLException {
+        System.out.println(
+                "Id: " + rs.getInt("id") +
+                " | EMPName: " + rs.getString("EMPname") +
+                " | Salary: " + rs.getInt("salary") +
+                " | Department: " + rs.getString("department")
+        );
+    }
+
+    public static void updateSalary(DataSource pool, Scanner scan) {
         try {
         	System.out.print("Enter Employee ID: ");
         	int id = scan.nextInt();
@@ -67,88 +139,284 @@ public class EmployeeDetails {
             System.out.print("Enter updated salary: ");
             int salary = scan.nextInt();
 
-            String query = "UPDATE EMPLOYEERECORD SET SALARY = ? WHERE ID = ?";
-            PreparedStatement ps = connect.prepareStatement(query);
+            updateSalary(pool, id, salary);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static void updateSalary(DataSource pool, int id, int salary) throws SQLException {
+        int row = changeSalary(pool, id, salary);
+        System.out.println(row + " row(s) affected");
+    }
+
+    static int changeSalary(DataSource pool, int id, int salary) throws SQLException {
+        // returns the old salary as well, so the salary stats can move the employee
+        String query = "UPDATE EMPLOYEERECORD e SET SALARY = ? "
+                + "FROM (SELECT ID, SALARY FROM EMPLOYEERECORD WHERE ID = ? FOR UPDATE) old "
+                + "WHERE e.ID = old.ID RETURNING e.department, old.salary";
+        try (Connection connect = pool.getConnection();
+             PreparedStatement ps = connect.prepareStatement(query)) {
 
             ps.setInt(1, salary);
             ps.setInt(2, id);
 
-            int row = ps.executeUpdate();
-            System.out.println(row + " row(s) affected");
-
-        } catch (Exception e) {
-            e.printStackTrace();
+            SalaryStats.writing();
+            try {
+                ResultSet rs = ps.executeQuery();
+                int row = 0;
+                while (rs.next()) {
+                    String dept = rs.getString("department");
+                    SalaryStats.removed(dept, rs.getInt("salary"));
+                    SalaryStats.added(dept, salary);
+                    BY_DEPARTMENT.invalidate(dept);
+                    row++;
+                }
+                return row;
+            } finally {
+                SalaryStats.written();
+            }
         }
     }
 
    
-    public static void deleteEmployee(Connection connect, Scanner scan) {
+    public static void deleteEmployee(DataSource pool, Scanner scan) {
         try {
             System.out.print("Enter Employee ID to delete: ");
             int id = scan.nextInt();
 
-            String query = "DELETE FROM EMPLOYEERECORD WHERE ID = ?";
-            PreparedStatement ps = connect.prepareStatement(query);
-
-            ps.setInt(1, id);
-
-            int row = ps.executeUpdate();
-            System.out.println(row + " row(s) deleted");
+            deleteEmployee(pool, id);
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    public static void deleteEmployee(DataSource pool, int id) throws SQLException {
+        int row = removeEmployee(pool, id);
+        System.out.println(row + " row(s) deleted");
+    }
+
+    static int removeEmployee(DataSource pool, int id) throws SQLException {
+        String query = "DELETE FROM EMPLOYEERECORD WHERE ID = ? RETURNING department, salary";
+        try (Connection connect = pool.getConnection();
+             PreparedStatement ps = connect.prepareStatement(query)) {
+
+            ps.setInt(1, id);
+
+            SalaryStats.writing();
+            try {
+                ResultSet rs = ps.executeQuery();
+                int row = 0;
+                while (rs.next()) {
+                    String dept = rs.getString("department");
+                    SalaryStats.removed(dept, rs.getInt("salary"));
+                    BY_DEPARTMENT.invalidate(dept);
+                    row++;
+                }
+                return row;
+            } finally {
+                SalaryStats.written();
+            }
+        }
+    }
+
     
-    public static void displayByDepartment(Connection connect, Scanner scan) {
+    public static void displayByDepartment(DataSource pool, Scanner scan) {
         try {
             System.out.print("Enter department name: ");
             String dept = scan.next();
 
-            String query = "SELECT * FROM EMPLOYEERECORD WHERE department = ?";
-            PreparedStatement ps = connect.prepareStatement(query);
+            displayByDepartment(pool, dept);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static void displayByDepartment(DataSource pool, String dept) throws SQLException {
+        for (Object[] employee : employeesIn(pool, dept)) {
+            System.out.println(
+                    "Id: " + employee[0] +
+                    " | Name: " + employee[1] +
+                    " | Salary: " + employee[2] +
+                    " | Department: " + employee[3]
+            );
+        }
+    }
+
+    /** The employees of {@code dept}, from the cache when it has them. */
+    static List<Object[]> employeesIn(DataSource pool, String dept) throws SQLException {
+        return BY_DEPARTMENT.get(dept, d -> loadDepartment(pool, d));
+    }
+
+    private static List<Object[]> loadDepartment(DataSource pool, String dept) throws SQLException {
+        String query = "SELECT " + COLUMNS + " FROM EMPLOYEERECORD WHERE department = ?";
+        try (Connection connect = pool.getConnection();
+             PreparedStatement ps = connect.prepareStatement(query)) {
             ps.setString(1, dept);
 
             ResultSet rs = ps.executeQuery();
+            List<Object[]> employees = new ArrayList<>();
+            while (rs.next())
+                employees.add(row(rs));
+            return Collections.unmodifiableList(employees);
+        }
+    }
 
-            while (rs.next()) {
-                System.out.println(
-                        "Id: " + rs.getInt("id") +
-                        " | Name: " + rs.getString("EMPname") +
-                        " | Salary: " + rs.getInt("salary") +
-                        " | Department: " + rs.getString("department")
-                );
-            }
+    /** Hit rate and load times of the department lookup cache. */
+    public static CacheMetrics cacheMetrics() {
+        return BY_DEPARTMENT.metrics();
+    }
 
+    public static void sortBySalary(DataSource pool, Scanner scan) {
+        try {
+            sortBySalary(pool);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    public static void sortBySalary(DataSource pool) throws SQLException {
+        System.out.println("Employees sorted by salary:");
+
+        BY_SALARY.forEach(pool, rs -> System.out.println(
+                "Id: " + rs.getInt("id") +
+                " | Name: " + rs.getString("EMPname") +
+                " | Salary: " + rs.getInt("salary") +
+                " | Department: " + rs.getString("department")
+        ));
+    }
+
+    /** Headcount, payroll, min, max and average salary per department, kept up to date in memory. */
+    public static List<DepartmentSummary> departmentStats(DataSource pool) throws SQLException {
+        return SalaryStats.summaries(pool);
+    }
+
+    /** The figures for one department, or null if there is nobody in it. */
+    public static DepartmentSummary departmentStats(DataSource pool, String dept) throws SQLException {
+        return SalaryStats.summary(pool, dept);
+    }
 
-    public static void sortBySalary(Connection connect, Scanner scan) {
+    public static void printDepartmentStats(DataSource pool, Scanner scan) {
+        System.out.print("Enter department name (or * for all): ");
+        String dept = scan.next();
         try {
-            String query = "SELECT * FROM EMPLOYEERECORD ORDER BY salary DESC";
-            PreparedStatement ps = connect.prepareStatement(query);
-            ResultSet rs = ps.executeQuery();
+            printDepartmentStats(pool, dept.equals("*") ? null : dept);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
-            System.out.println("Employees sorted by salary:");
+    /** Prints the figures for {@code dept}, or for every department if it is null. */
+    public static void printDepartmentStats(DataSource pool, String dept) throws SQLException {
+        List<DepartmentSummary> stats;
+        if (dept == null) {
+            stats = departmentStats(pool);
+        } else {
+            DepartmentSummary summary = departmentStats(pool, dept);
+            stats = summary == null ? Collections.emptyList() : Collections.singletonList(summary);
+        }
+        if (stats.isEmpty()) {
+            System.out.println("No employees in " + (dept == null ? "any department" : dept));
+            return;
+        }
 
-            while (rs.next()) {
-                System.out.println(
-                        "Id: " + rs.getInt("id") +
-                        " | Name: " + rs.getString("EMPname") +
-                        " | Salary: " + rs.getInt("salary") +
-                        " | Department: " + rs.getString("department")
-                );
-            }
+        System.out.printf("%-20s %8s %10s %10s %12s %14s%n",
+                "Department", "Count", "Min", "Max", "Average", "Payroll");
+        for (DepartmentSummary d : stats) {
+            System.out.printf("%-20s %8d %10d %10d %12.2f %14d%n", d.getDepartment(), d.getCount(),
+                    d.getMinSalary(), d.getMaxSalary(), d.getAverageSalary(), d.getTotalSalary());
+        }
+    }
 
+    /** Recomputes the department figures from the table and prints any that had drifted. */
+    public static void recomputeDepartmentStats(DataSource pool) throws SQLException {
+        List<String> drift = SalaryStats.recompute(pool);
+        for (String line : drift)
+            System.out.println(line);
+        System.out.println(drift.isEmpty() ? "Department statistics are consistent"
+                : drift.size() + " department(s) corrected");
+    }
+
+    public static void bulkLoad(DataSource pool, Scanner scan) {
+        System.out.print("Enter CSV file (id,name,salary,department per line): ");
+        try {
+            bulkLoad(pool, scan.next());
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /** Loads every employee in a CSV file, reporting the rows that were rejected. */
+    public static void bulkLoad(DataSource pool, String file) throws SQLException, IOException {
+        LoadResult result = load(pool, file);
+        for (String error : result.getErrors())
+            System.out.println(error);
+        System.out.println(result);
+    }
+
+    static LoadResult load(DataSource pool, String file) throws SQLException, IOException {
+        SalaryStats.writing();
+        try (Reader in = Files.newBufferedReader(Paths.get(file))) {
+            return LOADER.loadCsv(pool, in);
+        } finally {
+            SalaryStats.reload();
+            SalaryStats.written();
+            BY_DEPARTMENT.invalidateAll();
+        }
+    }
+
+    /**
+     * Registers the employee operations as batch commands:
+     * <pre>
+     * add &lt;id&gt; &lt;name&gt; &lt;salary&gt; &lt;department&gt;
+     * view
+     * page &lt;after id&gt; &lt;count&gt;
+     * salary &lt;id&gt; &lt;salary&gt;
+     * delete &lt;id&gt;
+     * department &lt;department&gt;
+     * sort
+     * percentiles [department]
+     * stats [department]
+     * recompute
+     * load &lt;csv file&gt;
+     * </pre>
+     * A command is refused while {@code allowed} is false. Commands throw
+     * rather than print their errors, so the runner counts them as failed.
+     */
+    public static BatchRunner addBatchCommands(BatchRunner runner, DataSource pool,
+                                               BooleanSupplier allowed) {
+        return runner
+                .command("add", "<id> <name> <salary> <department>", 4, 4, guard(allowed,
+                        a -> addEmployee(pool, Integer.parseInt(a[0]), a[1], Integer.parseInt(a[2]), a[3])))
+                .command("view", "", 0, 0, guard(allowed, a -> printEmployees(pool)))
+                .command("page", "<after id> <count>", 2, 2, guard(allowed,
+                        a -> viewEmployee(pool, Integer.parseInt(a[0]), Integer.parseInt(a[1]))))
+                .command("salary", "<id> <salary>", 2, 2, guard(allowed,
+                        a -> updateSalary(pool, Integer.parseInt(a[0]), Integer.parseInt(a[1]))))
+                .command("delete", "<id>", 1, 1, guard(allowed,
+                        a -> deleteEmployee(pool, Integer.parseInt(a[0]))))
+                .command("department", "<department>", 1, 1, guard(allowed,
+                        a -> displayByDepartment(pool, a[0])))
+                .command("sort", "", 0, 0, guard(allowed, a -> sortBySalary(pool)))
+                .command("percentiles", "[department]", 0, 1, guard(allowed,
+                        a -> SalaryStats.printPercentiles(pool, a.length > 0 ? a[0] : null)))
+                .command("stats", "[department]", 0, 1, guard(allowed,
+                        a -> printDepartmentStats(pool, a.length > 0 ? a[0] : null)))
+                .command("recompute", "", 0, 0, guard(allowed, a -> recomputeDepartmentStats(pool)))
+                .command("load", "<csv file>", 1, 1, guard(allowed, a -> bulkLoad(pool, a[0])));
+    }
+
+    private static BatchRunner.Command guard(BooleanSupplier allowed, BatchRunner.Command command) {
+        return args -> {
+            if (!allowed.getAsBoolean())
+                throw new IllegalStateException("Login required");
+            command.run(args);
+        };
+    }
+
     public static void exitProgram() throws InterruptedException {
         System.out.print("Exiting From This Process");
         Thread.sleep(1000);
@@ -0,0 +1,94 @@
+package com.g1rix.javalearning.EmployeeDetails;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import com.g1rix.javalearning.jdbc.AsyncExecutor;
+import com.g1rix.javalearning.jdbc.LoadResult;
+
+/**
+ * The {@link EmployeeDetails} operations for callers that cannot wait: each
+ * one runs on an {@link AsyncExecutor} and returns a future of its result
+ * instead of printing it. Errors complete the future exceptionally.
+ *
+ * Employees come back as {@code Object[] {id, name, salary, department}}.
+ *
+ * <pre>
+ * try (AsyncExecutor executor = new AsyncExecutor()) {
+ *     EmployeeService service = new EmployeeService(pool, executor);
+ *     service.byDepartment("IT").thenAccept(list -&gt; ...);
+ *     service.withTimeout(200).employees(0, 50).join();
+ * }
+ * </pre>
+ */
+public class EmployeeService {
+
+    private final DataSource pool;
+    private final AsyncExecutor executor;
+    private final long timeoutMillis;
+
+    /** Calls time out after the executor's default timeout. */
+    public EmployeeService(DataSource pool, AsyncExecutor executor) {
+        this(pool, executor, -1);
+    }
+
+    private EmployeeService(DataSource pool, AsyncExecutor executor, long timeoutMillis) {
+        this.pool = pool;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /** The same service, with calls made through it timing out after {@code millis}. */
+    public EmployeeService withTimeout(long millis) {
+        return new EmployeeService(pool, executor, millis);
+    }
+
+    /** @return the number of rows inserted */
+    public CompletableFuture<Integer> addEmployee(int id, String name, int salary, String dept) {
+        return submit(() -> EmployeeDetails.insertEmployee(pool, id, name, salary, dept));
+    }
+
+    /** Up to {@code count} employees with an id above {@code afterId}, in id order. */
+    public CompletableFuture<List<Object[]>> employees(int afterId, int count) {
+        return submit(() -> EmployeeDetails.employees(pool, afterId, count));
+    }
+
+    /** The {@code count} best paid employees, highest first. */
+    public CompletableFuture<List<Object[]>> highestPaid(int count) {
+        return submit(() -> EmployeeDetails.highestPaid(pool, count));
+    }
+
+    /** @return the number of rows updated */
+    public CompletableFuture<Integer> updateSalary(int id, int salary) {
+        return submit(() -> EmployeeDetails.changeSalary(pool, id, salary));
+    }
+
+    /** @return the number of rows deleted */
+    public CompletableFuture<Integer> deleteEmployee(int id) {
+        return submit(() -> EmployeeDetails.removeEmployee(pool, id));
+    }
+
+    public CompletableFuture<List<Object[]>> byDepartment(String dept) {
+        return submit(() -> EmployeeDetails.employeesIn(pool, dept));
+    }
+
+    public CompletableFuture<List<DepartmentSummary>> departmentStats() {
+        return submit(() -> EmployeeDetails.departmentStats(pool));
+    }
+
+    /** Salary at quantile {@code q} in {@code dept}, or across all departments if it is null. */
+    public CompletableFuture<Double> percentile(String dept, double q) {
+        return submit(() -> SalaryStats.percentile(pool, dept, q));
+    }
+
+    public CompletableFuture<LoadResult> bulkLoad(String file) {
+        return submit(() -> EmployeeDetails.load(pool, file));
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        return timeoutMillis < 0 ? executor.submit(task)
+                : executor.submit(task, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,253 @@
+package com.g1rix.javalearning.EmployeeDetails;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.TreeMap;
+import javax.sql.DataSource;
+import com.g1rix.javalearning.util.QuantileSketch;
+
+/**
+ * Salary statistics per department (headcount, payroll, min, max, average
+ * and percentiles), answered from memory instead of a GROUP BY or sort of
+ * EMPLOYEERECORD on every query.
+ *
+ * The figures are filled from one scan of the table the first time they
+ * are asked for, and from then on {@link EmployeeDetails} keeps them up to
+ * date on every add, salary update and delete made through it. Changes
+ * made to the table from elsewhere are not seen until {@link #reload} or
+ * {@link #recompute}. Percentiles are within 1% of the exact salary, see
+ * {@link QuantileSketch}; everything else is exact. Employees without a
+ * department are left out, and a missing salary counts as 0.
+ *
+ * Writers call {@link #writing} before their statement and {@link #written}
+ * after it, applying their changes in between. The scan runs outside the
+ * lock, and like a {@link com.g1rix.javalearning.jdbc.ReadCache} load it is
+ * answered from but not kept if a write was running when it started or
+ * began while it ran, since it may already include a change that is about
+ * to be applied on top of it.
+ */
+public class SalaryStats {
+
+    private static Map<String, Department> byDepartment = new TreeMap<>();
+    private static boolean loaded;
+    // writes started so far, and those not yet finished
+    private static long writes;
+    private static int pending;
+
+    /** Called before a statement that changes salaries; must be followed by {@link #written}. */
+    static synchronized void writing() {
+        writes++;
+        pending++;
+    }
+
+    /** Called once the statement and its {@link #added}/{@link #removed} calls are done, or it failed. */
+    static synchronized void written() {
+        pending--;
+    }
+
+    static synchronized void added(String dept, int salary) {
+        if (loaded && dept != null)
+            add(byDepartment, dept, salary);
+    }
+
+    static synchronized void removed(String dept, int salary) {
+        if (!loaded || dept == null)
+            return;
+        Department department = byDepartment.get(dept);
+        if (department != null && department.remove(salary) && department.count == 0)
+            byDepartment.remove(dept);
+    }
+
+    /** Drops the figures; the next query scans the table again. */
+    public static synchronized void reload() {
+        writes++;
+        byDepartment = new TreeMap<>();
+        loaded = false;
+    }
+
+    /**
+     * Salary at quantile {@code q} (0.5 for the median) in {@code dept}, or
+     * across all departments if it is null; NaN if there is nobody in it.
+     */
+    public static double percentile(DataSource pool, String dept, double q) throws SQLException {
+        Map<String, Department> departments = load(pool);
+        synchronized (SalaryStats.class) {
+            if (dept != null) {
+                Department department = departments.get(dept);
+                return department == null ? Double.NaN : department.sketch.quantile(q);
+            }
+            QuantileSketch all = new QuantileSketch();
+            for (Department department : departments.values())
+                all.merge(department.sketch);
+            return all.quantile(q);
+        }
+    }
+
+    /** Headcount and payroll of every department, in name order. */
+    public static List<DepartmentSummary> summaries(DataSource pool) throws SQLException {
+        Map<String, Department> departments = load(pool);
+        synchronized (SalaryStats.class) {
+            return snapshot(departments);
+        }
+    }
+
+    /** Headcount and payroll of {@code dept}, or null if there is nobody in it. */
+    public static DepartmentSummary summary(DataSource pool, String dept) throws SQLException {
+        Map<String, Department> departments = load(pool);
+        synchronized (SalaryStats.class) {
+            Department department = departments.get(dept);
+            return department == null ? null : department.summary(dept);
+        }
+    }
+
+    /**
+     * Rebuilds every figure from a fresh scan of the table and compares the
+     * result with what was kept incrementally until now. A write running at
+     * the same time can show up as drift.
+     *
+     * @return one line per department whose figures had drifted, empty if none had
+     */
+    public static List<String> recompute(DataSource pool) throws SQLException {
+        List<DepartmentSummary> before;
+        synchronized (SalaryStats.class) {
+            before = loaded ? snapshot(byDepartment) : null;
+            reload();
+        }
+        Map<String, Department> departments = load(pool);
+        List<String> drift = new ArrayList<>();
+        if (before == null)
+            return drift;
+
+        List<DepartmentSummary> after;
+        synchronized (SalaryStats.class) {
+            after = snapshot(departments);
+        }
+        Map<String, DepartmentSummary> kept = new TreeMap<>();
+        for (DepartmentSummary summary : before)
+            kept.put(summary.getDepartment(), summary);
+        for (DepartmentSummary actual : after) {
+            DepartmentSummary old = kept.remove(actual.getDepartment());
+            if (!actual.equals(old))
+                drift.add("Was " + (old == null ? actual.getDepartment() + ": missing" : old) + "; now " + actual);
+        }
+        for (DepartmentSummary old : kept.values())
+            drift.add("Was " + old + "; now " + old.getDepartment() + ": missing");
+        return drift;
+    }
+
+    /** Prints p50, p90 and p99 for {@code dept}, or for every department if it is null. */
+    public static void printPercentiles(DataSource pool, String dept) throws SQLException {
+        Map<String, Department> departments = load(pool);
+        synchronized (SalaryStats.class) {
+            if (dept != null && !departments.containsKey(dept)) {
+                System.out.println("No employees in " + dept);
+                return;
+            }
+
+            System.out.printf("%-20s %8s %10s %10s %10s%n", "Department", "Count", "p50", "p90", "p99");
+            for (Map.Entry<String, Department> e : departments.entrySet()) {
+                if (dept != null && !dept.equals(e.getKey()))
+                    continue;
+                QuantileSketch sketch = e.getValue().sketch;
+                System.out.printf("%-20s %8d %10.0f %10.0f %10.0f%n", e.getKey(), sketch.count(),
+                        sketch.quantile(0.5), sketch.quantile(0.9), sketch.quantile(0.99));
+            }
+        }
+    }
+
+    public static void printPercentiles(DataSource pool, Scanner scan) {
+        System.out.print("Enter department name (or * for all): ");
+        String dept = scan.next();
+        try {
+            printPercentiles(pool, dept.equals("*") ? null : dept);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static List<DepartmentSummary> snapshot(Map<String, Department> departments) {
+        List<DepartmentSummary> summaries = new ArrayList<>(departments.size());
+        for (Map.Entry<String, Department> e : departments.entrySet())
+            summaries.add(e.getValue().summary(e.getKey()));
+        return summaries;
+    }
+
+    /** The kept figures, or a fresh scan of the table, kept if no write overlapped it; read it under the lock. */
+    private static Map<String, Department> load(DataSource pool) throws SQLException {
+        long seen;
+        synchronized (SalaryStats.class) {
+            if (loaded)
+                return byDepartment;
+            seen = pending > 0 ? -1 : writes;
+        }
+
+        Map<String, Department> scanned = scan(pool);
+        synchronized (SalaryStats.class) {
+            if (loaded)
+                return byDepartment;
+            if (seen == writes && pending == 0) {
+                byDepartment = scanned;
+                loaded = true;
+            }
+        }
+        return scanned;
+    }
+
+    private static Map<String, Department> scan(DataSource pool) throws SQLException {
+        String query = "SELECT department, salary FROM EMPLOYEERECORD WHERE department IS NOT NULL";
+        try (Connection connect = pool.getConnection();
+             PreparedStatement ps = connect.prepareStatement(query);
+             ResultSet rs = ps.executeQuery()) {
+
+            Map<String, Department> scanned = new TreeMap<>();
+            while (rs.next())
+                add(scanned, rs.getString("department"), rs.getInt("salary"));
+            return scanned;
+        }
+    }
+
+    private static void add(Map<String, Department> departments, String dept, int salary) {
+        Department department = departments.get(dept);
+        if (department == null) {
+            department = new Department();
+            departments.put(dept, department);
+        }
+        department.add(salary);
+    }
+
+    // Min and max survive deletes because every salary is kept with its count.
+    private static final class Department {
+        final QuantileSketch sketch = new QuantileSketch();
+        final TreeMap<Integer, Integer> salaries = new TreeMap<>();
+        int count;
+        long total;
+
+        void add(int salary) {
+            sketch.add(salary);
+            salaries.merge(salary, 1, Integer::sum);
+            count++;
+            total += salary;
+        }
+
+        boolean remove(int salary) {
+            Integer n = salaries.get(salary);
+            if (n == null)
+                return false;
+            if (n == 1)
+                salaries.remove(salary);
+            else
+                salaries.put(salary, n - 1);
+            sketch.remove(salary);
+            count--;
+            total -= salary;
+            return true;
+        }
+
+        DepartmentSummary summary(String name) {
+            return new DepartmentSummary(name, count, total, salaries.firstKey(), salaries.lastKey());
+        }
+    }
+}
@@ -1,21 +1,24 @@
 package com.g1rix.javalearning.EmployeeDetails;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.util.Scanner;
+import com.g1rix.javalearning.jdbc.ConnectionPool;
+import com.g1rix.javalearning.util.BatchRunner;
 
 public class mainOfEmployee extends EmployeeDetails {
 
     private static final String DB_URL =
-            "jdbc:postgresql://localhost:5432/studentdatabase";
-    private static final String DB_USER = "giri";
-    private static final String DB_PASSWORD = "root";
+            System.getProperty("db.url", "jdbc:postgresql://localhost:5432/studentdatabase");
+    private static final String DB_USER = System.getProperty("db.user", "giri");
+    private static final String DB_PASSWORD = System.getProperty("db.password", "root");
 
     public static void main(String[] args) {
 
-        try {
-            Connection connection =
-                    DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        if (args.length >= 2 && args[0].equals("--batch")) {
+            runBatch(args[1]);
+            return;
+        }
+
+        try (ConnectionPool pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD)) {
 
             Scanner scan = new Scanner(System.in);
             int choice;
@@ -27,24 +30,45 @@ public class mainOfEmployee extends EmployeeDetails {
                 System.out.println("4. Delete Employee");
                 System.out.println("5. Display Employees By Department");
                 System.out.println("6. Sort by Salary");
-                System.out.println("7. Exit");
+                System.out.println("7. Salary Percentiles");
+                System.out.println("8. Bulk Load from CSV");
+                System.out.println("9. Department Statistics");
+                System.out.println("10. Exit");
                 System.out.print("Choose: ");
 
                 choice = scan.nextInt();
 
                 switch (choice) {
-                    case 1 -> addEmployee(connection, scan);
-                    case 2 -> viewEmployee(connection);
-                    case 3 -> updateSalary(connection, scan);
-                    case 4 -> deleteEmployee(connection, scan);
-                    case 5 -> displayByDepartment(connection, scan); 
-                    case 6 -> sortBySalary(connection, scan);
-                    case 7 -> exitProgram();
+                    case 1 -> addEmployee(pool, scan);
+                    case 2 -> viewEmployee(pool);
+                    case 3 -> updateSalary(pool, scan);
+                    case 4 -> deleteEmployee(pool, scan);
+                    case 5 -> displayByDepartment(pool, scan); 
+                    case 6 -> sortBySalary(pool, scan);
+                    case 7 -> SalaryStats.printPercentiles(pool, scan);
+                    case 8 -> bulkLoad(pool, scan);
+                    case 9 -> printDepartmentStats(pool, scan);
+                    case 10 -> exitProgram();
                     default -> System.out.println("Invalid choice!");
                 }
 
-            } while (choice != 7); 
+            } while (choice != 10); 
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
+    /**
+     * Runs the commands of {@link EmployeeDetails#addBatchCommands} from
+     * {@code script} (a file, or "-" for stdin), one per line, without prompts.
+     */
+    private static void runBatch(String script) {
+        try (ConnectionPool pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD)) {
+            addBatchCommands(new BatchRunner(), pool, () -> true).run(script);
+            System.out.println("Connection pool: " + pool.metrics());
+            System.out.println(EmployeeDetails.cacheMetrics());
+            System.out.print(pool.queryStats().dump());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -24,9 +24,12 @@ DROP TABLE IF EXISTS LOGINSYSTEM;
 
 CREATE TABLE LOGINSYSTEM (
     USERNAME VARCHAR(20) PRIMARY KEY,
-    PASSWORD VARCHAR(30) NOT NULL
+    PASSWORD VARCHAR(100) NOT NULL   -- pbkdf2$<iterations>$<salt>$<hash>
 );
 
+-- Existing databases: widen the column for hashed passwords
+-- ALTER TABLE LOGINSYSTEM ALTER COLUMN PASSWORD TYPE VARCHAR(100);
+
 -- ================================================
 -- 2. Employee Record Table
 -- ================================================
@@ -48,8 +51,8 @@ INSERT INTO LOGINSYSTEM (USERNAME, PASSWORD) VALUES
     ('manager', 'manager123'),
     ('user', 'user123');
 
--- Note: In production, passwords should be hashed!
--- These are plain text for demonstration only.
+-- Note: These are plain text for demonstration only. The application
+-- replaces each one with a salted hash the first time that user logs in.
 
 -- ================================================
 -- Sample Data - Employee Records
@@ -144,6 +147,7 @@ ORDER BY avg_salary DESC;
 -- WHERE salary > (SELECT AVG(salary) FROM EMPLOYEERECORD);
 
 -- Department-wise salary statistics
+-- (the application serves these from memory: EmployeeDetails.departmentStats)
 -- SELECT 
 --     department,
 --     COUNT(*) as emp_count,
@@ -179,6 +183,9 @@ ORDER BY avg_salary DESC;
 -- Create index on salary for faster sorting
 -- CREATE INDEX idx_salary ON EMPLOYEERECORD(salary);
 
+-- Index for paging through employees by salary (sortBySalary)
+-- CREATE INDEX idx_salary_id ON EMPLOYEERECORD ((COALESCE(salary, 0)) DESC, id DESC);
+
 -- Create index on empname for faster searching
 -- CREATE INDEX idx_empname ON EMPLOYEERECORD(empname);
 
@@ -0,0 +1,11 @@
+package com.g1rix.javalearning.loginSystem;
+
+/** A login or registration that was refused; the message says why and can be shown to the user. */
+public class LoginException extends Exception {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public LoginException(String message) {
+		super(message);
+	}
+}
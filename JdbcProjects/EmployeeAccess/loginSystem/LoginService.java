@@ -0,0 +1,311 @@
+package com.g1rix.javalearning.loginSystem;
+
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+/**
+ * Registration and login against LOGINSYSTEM, built to stay up under a
+ * storm of login attempts.
+ *
+ * <ul>
+ * <li>Passwords are stored hashed, see {@link PasswordHasher}. Plaintext
+ * rows from before are re-hashed the first time their user logs in.</li>
+ * <li>A Bloom filter of the usernames in the table turns away unknown
+ * names without a database round trip or a hash. It is rebuilt every
+ * {@code auth.filter.refreshMs} (default 60 s) to pick up users registered
+ * by other processes.</li>
+ * <li>After {@code auth.maxFailures} wrong passwords in a row (default 5)
+ * a user is locked out for 1 s, doubling with every further failure up to
+ * 15 minutes. A locked user is refused before any hashing is done, and
+ * no more guesses for one user are checked at once than are left before
+ * the lockout, so a burst of concurrent guesses cannot get past it.</li>
+ * <li>A successful login returns a {@link Session} that stays valid for
+ * {@code auth.session.ttlMs} after its last use (default 30 minutes), so
+ * later operations check the token instead of the password.</li>
+ * </ul>
+ */
+public class LoginService implements AutoCloseable {
+
+	private static final long MAX_LOCK_MILLIS = 15 * 60 * 1000;
+	private static final int MAX_TRACKED = 10_000;
+
+	private final DataSource pool;
+	private final PasswordHasher hasher;
+	private final SecureRandom random = new SecureRandom();
+	private final int maxFailures = Integer.getInteger("auth.maxFailures", 5);
+	private final long filterRefreshMillis = Long.getLong("auth.filter.refreshMs", 60_000L);
+	private final long sessionTtlMillis = Long.getLong("auth.session.ttlMs", 30 * 60 * 1000L);
+	private final int maxSessions = Integer.getInteger("auth.session.max", 10_000);
+
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+	private final Map<String, Attempts> attempts = new ConcurrentHashMap<>();
+	private volatile UsernameFilter filter;
+	private volatile long filterBuiltAt;
+	private int filterAdds;
+
+	public LoginService(DataSource pool) {
+		this(pool, new PasswordHasher());
+	}
+
+	public LoginService(DataSource pool, PasswordHasher hasher) {
+		this.pool = pool;
+		this.hasher = hasher;
+	}
+
+	/**
+	 * Adds a user with the password stored hashed.
+	 *
+	 * @throws LoginException if the name is taken or the hasher is overloaded
+	 */
+	public void register(String name, String password) throws SQLException, LoginException {
+		String hash = hasher.hash(password);
+		String Query = "INSERT INTO LOGINSYSTEM (USERNAME, PASSWORD) VALUES(?,?)";
+		try (Connection connect = pool.getConnection();
+				PreparedStatement ps = connect.prepareStatement(Query)) {
+			ps.setString(1, name);
+			ps.setString(2, hash);
+			ps.executeUpdate();
+		} catch (SQLException e) {
+			// class 23 is an integrity constraint violation, here the primary key
+			if (e.getSQLState() != null && e.getSQLState().startsWith("23"))
+				throw new LoginException("Username " + name + " is already taken");
+			throw e;
+		}
+		synchronized (this) {
+			if (filter != null) {
+				filter.add(name);
+				// sized for the table as it was; rebuild larger once it fills up
+				if (++filterAdds > filter.capacity() / 2)
+					filterBuiltAt = 0;
+			}
+		}
+	}
+
+	/**
+	 * Checks the password and opens a session.
+	 *
+	 * @throws LoginException if the name or password is wrong, the user is
+	 *         locked out, or too many logins are already in progress
+	 */
+	public Session login(String name, String password) throws SQLException, LoginException {
+		if (!usernames().mightContain(name))
+			throw new LoginException("Invalid username or password");
+
+		Attempts tries = reserve(name);
+		String stored;
+		boolean matched;
+		try {
+			stored = storedPassword(name);
+			matched = stored != null && hasher.verify(password, stored);
+		} catch (Throwable e) {
+			// no verdict on the password, so nothing to count
+			release(tries);
+			throw e;
+		}
+		if (!matched) {
+			failed(tries);
+			throw new LoginException("Invalid username or password");
+		}
+		succeeded(name, tries);
+		if (hasher.needsRehash(stored))
+			rehash(name, stored, password);
+		return open(name);
+	}
+
+	/** The live session with this token, kept alive for another TTL; null if it has expired or never existed. */
+	public Session validate(String token) {
+		if (token == null)
+			return null;
+		Session session = sessions.get(token);
+		long now = System.currentTimeMillis();
+		if (session == null)
+			return null;
+		if (session.getExpiresAt() <= now) {
+			sessions.remove(token, session);
+			return null;
+		}
+		session.extendTo(now + sessionTtlMillis);
+		return session;
+	}
+
+	public void logout(String token) {
+		if (token != null)
+			sessions.remove(token);
+	}
+
+	/** Sessions currently open, including any that have lapsed but not yet been cleared. */
+	public int getSessionCount() {
+		return sessions.size();
+	}
+
+	private Session open(String name) {
+		if (sessions.size() >= maxSessions)
+			purgeSessions();
+		byte[] bytes = new byte[32];
+		random.nextBytes(bytes);
+		String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+		long now = System.currentTimeMillis();
+		Session session = new Session(token, name, now, now + sessionTtlMillis);
+		sessions.put(token, session);
+		return session;
+	}
+
+	// Drops lapsed sessions, then the ones closest to lapsing if that was not enough.
+	private void purgeSessions() {
+		long now = System.currentTimeMillis();
+		sessions.values().removeIf(s -> s.getExpiresAt() <= now);
+		Iterator<Session> oldest = sessions.values().stream()
+				.sorted((a, b) -> Long.compare(a.getExpiresAt(), b.getExpiresAt())).iterator();
+		while (sessions.size() >= maxSessions && oldest.hasNext())
+			sessions.remove(oldest.next().getToken());
+	}
+
+	/**
+	 * Takes one of the user's attempt slots before the password is checked:
+	 * refused while locked out, or once the checks in progress could use
+	 * up every failure left before the lockout (one at a time after one).
+	 */
+	private Attempts reserve(String name) throws LoginException {
+		if (attempts.size() >= MAX_TRACKED) {
+			long now = System.currentTimeMillis();
+			attempts.values().removeIf(a -> forget(a, now));
+		}
+		while (true) {
+			Attempts tries = attempts.computeIfAbsent(name, n -> new Attempts());
+			synchronized (tries) {
+				if (tries.removed)
+					continue;
+				long now = System.currentTimeMillis();
+				if (tries.lockedUntil > now)
+					throw new LoginException("Too many failed attempts, try again in "
+							+ ((tries.lockedUntil - now + 999) / 1000) + " s");
+				if (tries.inFlight >= Math.max(1, maxFailures - tries.failures))
+					throw new LoginException("Too many logins in progress for this user, try again shortly");
+				tries.inFlight++;
+				return tries;
+			}
+		}
+	}
+
+	private static boolean forget(Attempts tries, long now) {
+		synchronized (tries) {
+			if (tries.inFlight > 0 || tries.lockedUntil > now || tries.lastFailure >= now - MAX_LOCK_MILLIS)
+				return false;
+			tries.removed = true;
+			return true;
+		}
+	}
+
+	private static void release(Attempts tries) {
+		synchronized (tries) {
+			tries.inFlight--;
+		}
+	}
+
+	private void succeeded(String name, Attempts tries) {
+		synchronized (tries) {
+			tries.inFlight--;
+			tries.failures = 0;
+			tries.lockedUntil = 0;
+			if (tries.inFlight == 0) {
+				tries.removed = true;
+				attempts.remove(name, tries);
+			}
+		}
+	}
+
+	private void failed(Attempts tries) {
+		synchronized (tries) {
+			tries.inFlight--;
+			tries.failures++;
+			tries.lastFailure = System.currentTimeMillis();
+			if (tries.failures >= maxFailures) {
+				int doublings = Math.min(tries.failures - maxFailures, 20);
+				tries.lockedUntil = tries.lastFailure + Math.min(MAX_LOCK_MILLIS, 1000L << doublings);
+			}
+		}
+	}
+
+	private String storedPassword(String name) throws SQLException {
+		String Query = "SELECT PASSWORD FROM LOGINSYSTEM WHERE USERNAME = ?";
+		try (Connection connect = pool.getConnection();
+				PreparedStatement ps = connect.prepareStatement(Query)) {
+			ps.setString(1, name);
+			ResultSet rs = ps.executeQuery();
+			return rs.next() ? rs.getString("password") : null;
+		}
+	}
+
+	// Only replaces the value that was checked, so a password changed meanwhile is left alone.
+	private void rehash(String name, String stored, String password) {
+		String hash;
+		try {
+			hash = hasher.hash(password);
+		} catch (LoginException e) {
+			return; // hasher busy; the upgrade is tried again next time
+		}
+		String Query = "UPDATE LOGINSYSTEM SET PASSWORD = ? WHERE USERNAME = ? AND PASSWORD = ?";
+		try (Connection connect = pool.getConnection();
+				PreparedStatement ps = connect.prepareStatement(Query)) {
+			ps.setString(1, hash);
+			ps.setString(2, name);
+			ps.setString(3, stored);
+			ps.executeUpdate();
+		} catch (Exception e) {
+			// still logged in; the upgrade is tried again next time
+			e.printStackTrace();
+		}
+	}
+
+	private UsernameFilter usernames() throws SQLException {
+		UsernameFilter current = filter;
+		if (current != null && System.currentTimeMillis() - filterBuiltAt < filterRefreshMillis)
+			return current;
+		synchronized (this) {
+			if (filter != null && System.currentTimeMillis() - filterBuiltAt < filterRefreshMillis)
+				return filter;
+
+			String Query = "SELECT USERNAME FROM LOGINSYSTEM";
+			try (Connection connect = pool.getConnection();
+					PreparedStatement ps = connect.prepareStatement(Query);
+					ResultSet rs = ps.executeQuery()) {
+				List<String> names = new ArrayList<>();
+				while (rs.next())
+					names.add(rs.getString("username"));
+				UsernameFilter rebuilt = new UsernameFilter(names.size() * 2, 0.01);
+				for (String name : names)
+					rebuilt.add(name);
+				filter = rebuilt;
+				filterAdds = 0;
+				filterBuiltAt = System.currentTimeMillis();
+			}
+			return filter;
+		}
+	}
+
+	@Override
+	public void close() {
+		hasher.close();
+	}
+
+	// Guarded by its own monitor.
+	private static final class Attempts {
+		int failures;
+		long lastFailure;
+		long lockedUntil;
+		int inFlight;
+		// dropped from the map; look the name up again
+		boolean removed;
+	}
+}
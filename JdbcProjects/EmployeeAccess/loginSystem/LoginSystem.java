@@ -1,62 +1,67 @@
 package com.g1rix.javalearning.loginSystem;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Scanner;
+import javax.sql.DataSource;
 
 import com.g1rix.javalearning.EmployeeDetails.*;
 
 
 public class LoginSystem {
-	public static void userRegistration(Connection connect,Scanner scan) {
+	public static void userRegistration(LoginService auth,Scanner scan) {
 		try {
 			System.out.println("Enter a Unique Username");
 			String name = scan.next();
 			System.out.println("Enter a Strong Password");
 			String password = scan.next();		
-			String Query = "INSERT INTO LOGINSYSTEM VALUES(?,?)";
-			PreparedStatement ps = connect.prepareStatement(Query);
-			ps.setString(1, name);
-			ps.setString(2, password);
-			int row = ps.executeUpdate();
-			System.out.println(row + "rows affected");
+			userRegistration(auth, name, password);
 		} catch (Exception e) {
-			// TODO: handle exception
 			e.printStackTrace();
 		}
-		
-		
 	}
-	public static void loginValidation(Connection connect,Scanner scan) {
+	public static void userRegistration(LoginService auth, String name, String password) {
+		try {
+			auth.register(name, password);
+			System.out.println("User registered");
+		} catch (LoginException e) {
+			System.out.println(e.getMessage());
+		} catch (SQLException e) {
+			System.out.println("Could not register, database error: " + e.getMessage());
+		}
+	}
+	public static void loginValidation(DataSource pool, LoginService auth, Scanner scan) {
 		try {
 			System.out.println("Enter the Username");
 			String name =scan.next();
 			System.out.println("Enter the Password");
 			String password =scan.next();			
-			String Query = "SELECT PASSWORD FROM LOGINSYSTEM WHERE USERNAME = ?";
-			PreparedStatement ps = connect.prepareStatement(Query);
-			ps.setString(1, name);
-			ResultSet rs = ps.executeQuery();
-			if (rs.next()) {				
-				String UserPassword = rs.getString("password");
-				if(password.equals(UserPassword)) { 					
-					System.out.println("Login Successful");
-					EmployeeAccess(connect,scan);
-				}
-				else System.out.println("Password didn't match!");
-			}
+			Session session = loginValidation(auth, name, password);
+			if (session != null)
+				EmployeeAccess(pool, auth, session, scan);
 		} catch (Exception e) {
-			// TODO: handle exception
 			e.printStackTrace();
 		}
 	}
+	/** Opens a session for the user, or prints why not and returns null. */
+	public static Session loginValidation(LoginService auth, String name, String password) {
+		try {
+			Session session = auth.login(name, password);
+			System.out.println("Login Successful");
+			return session;
+		} catch (LoginException e) {
+			System.out.println(e.getMessage());
+		} catch (SQLException e) {
+			System.out.println("Could not log in, database error: " + e.getMessage());
+		}
+		return null;
+	}
 	public static void ExitProgram() throws InterruptedException {
 		System.out.print("Exiting From Program");
         Thread.sleep(1000);
         System.out.println("...");
 	}
-	private static void EmployeeAccess(Connection connect,Scanner scan) throws InterruptedException {
+	private static void EmployeeAccess(DataSource pool, LoginService auth, Session session, Scanner scan)
+			throws InterruptedException {
 		Scanner scn = new Scanner(System.in);
         int choice;
 
@@ -67,22 +72,35 @@ public class LoginSystem {
             System.out.println("4. Delete Employee");
             System.out.println("5. Display Employees By Department");
             System.out.println("6. Sort by Salary");
-            System.out.println("7. Exit");
+            System.out.println("7. Salary Percentiles");
+            System.out.println("8. Bulk Load from CSV");
+            System.out.println("9. Department Statistics");
+            System.out.println("10. Exit");
             System.out.print("Choose: ");
 
             choice = scn.nextInt();
+            if (auth.validate(session.getToken()) == null) {
+                System.out.println("Session expired, please log in again");
+                return;
+            }
 
             switch (choice) {
-                case 1 -> EmployeeDetails.addEmployee(connect, scan);
-                case 2 -> EmployeeDetails.viewEmployee(connect);
-                case 3 -> EmployeeDetails.updateSalary(connect, scan);
-                case 4 -> EmployeeDetails.deleteEmployee(connect, scan);
-                case 5 -> EmployeeDetails.displayByDepartment(connect, scan); 
-                case 6 -> EmployeeDetails.sortBySalary(connect, scan);
-                case 7 -> EmployeeDetails.exitProgram();
+                case 1 -> EmployeeDetails.addEmployee(pool, scan);
+                case 2 -> EmployeeDetails.viewEmployee(pool);
+                case 3 -> EmployeeDetails.updateSalary(pool, scan);
+                case 4 -> EmployeeDetails.deleteEmployee(pool, scan);
+                case 5 -> EmployeeDetails.displayByDepartment(pool, scan); 
+                case 6 -> EmployeeDetails.sortBySalary(pool, scan);
+                case 7 -> SalaryStats.printPercentiles(pool, scan);
+                case 8 -> EmployeeDetails.bulkLoad(pool, scan);
+                case 9 -> EmployeeDetails.printDepartmentStats(pool, scan);
+                case 10 -> {
+                    auth.logout(session.getToken());
+                    EmployeeDetails.exitProgram();
+                }
                 default -> System.out.println("Invalid choice!");
             }
 
-        } while (choice != 7); 
+        } while (choice != 10); 
 	}
 }
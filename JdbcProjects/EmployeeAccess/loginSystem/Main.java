@@ -1,24 +1,30 @@
 package com.g1rix.javalearning.loginSystem;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.util.Scanner;
+
+import com.g1rix.javalearning.EmployeeDetails.EmployeeDetails;
+import com.g1rix.javalearning.jdbc.ConnectionPool;
+import com.g1rix.javalearning.util.BatchRunner;
 public class Main {
-	private static final String DB_URL ="jdbc:postgresql://localhost:5432/studentdatabase";
-	private static final String DB_USER = "giri";
-	private static final String DB_PASSWORD = "root";
+	private static final String DB_URL = System.getProperty("db.url", "jdbc:postgresql://localhost:5432/studentdatabase");
+	private static final String DB_USER = System.getProperty("db.user", "giri");
+	private static final String DB_PASSWORD = System.getProperty("db.password", "root");
 	public static void main(String[] args) {
-		try {
-			Connection connect = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+		if (args.length >= 2 && args[0].equals("--batch")) {
+			runBatch(args[1]);
+			return;
+		}
+		try (ConnectionPool pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD);
+				LoginService auth = new LoginService(pool)) {
 			Scanner scan = new Scanner(System.in);
 			int choice;
 			do {
 				System.out.println("Choose Operation -> \n1.New Registration \n2.Login \n3.Exit ");
 				choice = scan.nextInt();
 				switch (choice) {
-				case 1:LoginSystem.userRegistration(connect, scan);
+				case 1:LoginSystem.userRegistration(auth, scan);
 				break;
-				case 2:LoginSystem.loginValidation(connect, scan);
+				case 2:LoginSystem.loginValidation(pool, auth, scan);
 				break;
 				case 3:LoginSystem.ExitProgram();
 					break;
@@ -32,4 +38,39 @@ public class Main {
 			e.printStackTrace();
 		}
 	}
+	/**
+	 * Runs one command per line from {@code script} (a file, or "-" for
+	 * stdin) without prompts: {@code register <user> <password>},
+	 * {@code login <user> <password>}, and after a successful login the
+	 * employee commands of {@link EmployeeDetails#addBatchCommands}. A
+	 * refused registration or login counts as a failed command.
+	 */
+	private static void runBatch(String script) {
+		try (ConnectionPool pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD);
+				LoginService auth = new LoginService(pool)) {
+			Session[] session = new Session[1];
+			BatchRunner runner = new BatchRunner()
+					.command("register", "<user> <password>", 2, 2,
+							a -> {
+								auth.register(a[0], a[1]);
+								System.out.println("User registered");
+							})
+					.command("login", "<user> <password>", 2, 2, a -> {
+						session[0] = null;
+						session[0] = auth.login(a[0], a[1]);
+						System.out.println("Login Successful");
+					})
+					.command("logout", "", 0, 0, a -> {
+						auth.logout(session[0] == null ? null : session[0].getToken());
+						session[0] = null;
+					});
+			EmployeeDetails.addBatchCommands(runner, pool,
+					() -> session[0] != null && auth.validate(session[0].getToken()) != null).run(script);
+			System.out.println("Connection pool: " + pool.metrics());
+			System.out.println(EmployeeDetails.cacheMetrics());
+			System.out.print(pool.queryStats().dump());
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
 }
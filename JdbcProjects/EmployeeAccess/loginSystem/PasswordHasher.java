@@ -0,0 +1,133 @@
+package com.g1rix.javalearning.loginSystem;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Hashes and checks passwords with PBKDF2-HMAC-SHA256 and a random salt.
+ *
+ * A hash is stored as {@code pbkdf2$<iterations>$<salt>$<hash>}, so the
+ * cost ({@code auth.hash.iterations}, default 210000) can be raised later
+ * and old hashes still verify; {@link #needsRehash} tells which ones to
+ * replace. Values without the prefix are taken as plaintext passwords
+ * from before hashing.
+ *
+ * Hashing is deliberately slow, so it runs on its own pool of
+ * {@code auth.hash.threads} threads (default: one per core) with at most
+ * {@code auth.hash.queue} waiting (default 256). During a login storm the
+ * excess is refused straight away instead of queueing without bound or
+ * taking the CPU from everything else.
+ */
+public class PasswordHasher implements AutoCloseable {
+	
+	private static final String PREFIX = "pbkdf2$";
+	private static final int SALT_BYTES = 16;
+	private static final int HASH_BITS = 256;
+	
+	private final int iterations;
+	private final ThreadPoolExecutor workers;
+	private final SecureRandom random = new SecureRandom();
+	
+	public PasswordHasher() {
+		this(Integer.getInteger("auth.hash.iterations", 210_000),
+				Integer.getInteger("auth.hash.threads", Runtime.getRuntime().availableProcessors()),
+				Integer.getInteger("auth.hash.queue", 256));
+	}
+	
+	public PasswordHasher(int iterations, int threads, int queue) {
+		if (iterations < 1 || threads < 1 || queue < 1)
+			throw new IllegalArgumentException("Iterations, threads and queue must be positive");
+		this.iterations = iterations;
+		AtomicInteger count = new AtomicInteger();
+		this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queue), r -> {
+					Thread t = new Thread(r, "password-hasher-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+	}
+	
+	public String hash(String password) throws LoginException {
+		byte[] salt = new byte[SALT_BYTES];
+		random.nextBytes(salt);
+		byte[] hash = onWorker(() -> pbkdf2(password, salt, iterations));
+		Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+		return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+	}
+	
+	/**
+	 * Whether {@code password} matches {@code stored}, in time that does not
+	 * depend on where they differ. A malformed hash matches nothing.
+	 */
+	public boolean verify(String password, String stored) throws LoginException {
+		if (!stored.startsWith(PREFIX))
+			return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+		
+		String[] parts = stored.split("\\$");
+		if (parts.length != 4)
+			return false;
+		int rounds;
+		byte[] salt;
+		byte[] expected;
+		try {
+			rounds = Integer.parseInt(parts[1]);
+			salt = Base64.getDecoder().decode(parts[2]);
+			expected = Base64.getDecoder().decode(parts[3]);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		if (rounds < 1 || salt.length == 0 || expected.length == 0)
+			return false;
+		return MessageDigest.isEqual(expected, onWorker(() -> pbkdf2(password, salt, rounds)));
+	}
+	
+	/** Whether {@code stored} is plaintext or was hashed at a different cost than the current one. */
+	public boolean needsRehash(String stored) {
+		return !stored.startsWith(PREFIX + iterations + "$");
+	}
+	
+	/** Hashes running or waiting. */
+	public int getPending() {
+		return workers.getActiveCount() + workers.getQueue().size();
+	}
+	
+	private byte[] onWorker(Callable<byte[]> task) throws LoginException {
+		Future<byte[]> result;
+		try {
+			result = workers.submit(task);
+		} catch (RejectedExecutionException e) {
+			throw new LoginException("Too many logins in progress, try again shortly");
+		}
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			result.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new LoginException("Login interrupted");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Password hashing failed", e.getCause());
+		}
+	}
+	
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+		try {
+			return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+		} finally {
+			spec.clearPassword();
+		}
+	}
+	
+	@Override
+	public void close() {
+		workers.shutdownNow();
+	}
+}
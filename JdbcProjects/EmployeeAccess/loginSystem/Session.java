@@ -0,0 +1,44 @@
+package com.g1rix.javalearning.loginSystem;
+
+/** A signed-in user, identified to {@link LoginService} by its token. */
+public class Session {
+	
+	private final String token;
+	private final String username;
+	private final long createdAt;
+	private volatile long expiresAt;
+	
+	Session(String token, String username, long createdAt, long expiresAt) {
+		this.token = token;
+		this.username = username;
+		this.createdAt = createdAt;
+		this.expiresAt = expiresAt;
+	}
+	
+	public String getToken() {
+		return token;
+	}
+	
+	public String getUsername() {
+		return username;
+	}
+	
+	/** When it was created, in milliseconds since the epoch. */
+	public long getCreatedAt() {
+		return createdAt;
+	}
+	
+	/** When it lapses unless used again, in milliseconds since the epoch. */
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+	
+	void extendTo(long expiresAt) {
+		this.expiresAt = expiresAt;
+	}
+	
+	@Override
+	public String toString() {
+		return "Session of " + username;
+	}
+}
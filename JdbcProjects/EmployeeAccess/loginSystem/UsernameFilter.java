@@ -0,0 +1,70 @@
+package com.g1rix.javalearning.loginSystem;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter of usernames: {@link #mightContain} is never wrong about
+ * a name that was added, and wrong about roughly {@code falsePositiveRate}
+ * of the others. Lookups take no lock.
+ */
+class UsernameFilter {
+	
+	private final AtomicLongArray bits;
+	private final int bitCount;
+	private final int hashes;
+	private final int capacity;
+	
+	UsernameFilter(int capacity, double falsePositiveRate) {
+		this.capacity = Math.max(capacity, 64);
+		long m = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, m));
+		this.hashes = Math.max(1, (int) Math.round((double) bitCount / this.capacity * Math.log(2)));
+		this.bits = new AtomicLongArray((bitCount + 63) / 64);
+	}
+	
+	/** How many names it was sized for; past that the false positive rate climbs. */
+	int capacity() {
+		return capacity;
+	}
+	
+	void add(String name) {
+		long hash = hash(name);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+		for (int i = 0; i < hashes; i++) {
+			int bit = Math.floorMod(h1 + i * h2, bitCount);
+			long mask = 1L << bit;
+			int word = bit >>> 6;
+			long old;
+			do {
+				old = bits.get(word);
+			} while ((old & mask) == 0 && !bits.compareAndSet(word, old, old | mask));
+		}
+	}
+	
+	boolean mightContain(String name) {
+		long hash = hash(name);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+		for (int i = 0; i < hashes; i++) {
+			int bit = Math.floorMod(h1 + i * h2, bitCount);
+			if ((bits.get(bit >>> 6) & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+	
+	// 64-bit FNV-1a with a final mix; the two halves serve as the two hashes of double hashing.
+	private static long hash(String name) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+			h ^= b;
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return h;
+	}
+}
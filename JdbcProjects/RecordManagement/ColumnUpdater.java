@@ -0,0 +1,202 @@
+package com.g1rix.javalearning;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+/**
+ * Updates any set of columns of one row, or of many rows, without putting
+ * caller text into the SQL.
+ *
+ * Column names are checked against the table as the database describes it
+ * (read once, on first use); the key column itself cannot be changed.
+ * String values given for numeric columns are parsed, so input typed at a
+ * prompt can be passed straight through.
+ *
+ * The SQL only depends on which columns change, listed in name order, so
+ * every update of the same columns runs the same statement text, and the
+ * connection pool's statement cache prepares it once per connection.
+ */
+public class ColumnUpdater {
+
+	private final String table;
+	private final String keyColumn;
+	private final Map<String, String> sqlByColumns = new ConcurrentHashMap<>();
+	private volatile Map<String, Integer> columnTypes;
+
+	public ColumnUpdater(String table, String keyColumn) {
+		this.table = table;
+		this.keyColumn = keyColumn.toLowerCase();
+	}
+
+	/**
+	 * Applies the changes, column name to new value, to the row with this key.
+	 *
+	 * @return the number of rows updated
+	 * @throws IllegalArgumentException for an unknown column, the key column or a value of the wrong type
+	 */
+	public int update(DataSource pool, Object key, Map<String, ?> changes) throws SQLException {
+		Map<String, Object> values = check(pool, changes);
+		String sql = sql(values.keySet());
+		try (Connection connect = pool.getConnection();
+				PreparedStatement ps = connect.prepareStatement(sql)) {
+			bind(ps, values, key);
+			return ps.executeUpdate();
+		}
+	}
+
+	/**
+	 * Applies the changes for every key in one transaction: updates of the
+	 * same columns go to the database as one batch, so a thousand rows cost
+	 * one round trip per distinct column set rather than a thousand.
+	 *
+	 * @return the number of rows updated
+	 */
+	public int updateAll(DataSource pool, Map<?, ? extends Map<String, ?>> changes) throws SQLException {
+		Map<String, List<Object[]>> byShape = new LinkedHashMap<>();
+		for (Map.Entry<?, ? extends Map<String, ?>> e : changes.entrySet()) {
+			Map<String, Object> values = check(pool, e.getValue());
+			byShape.computeIfAbsent(sql(values.keySet()), s -> new ArrayList<>())
+					.add(new Object[] { e.getKey(), values });
+		}
+
+		int rows = 0;
+		try (Connection connect = pool.getConnection()) {
+			connect.setAutoCommit(false);
+			try {
+				for (Map.Entry<String, List<Object[]>> shape : byShape.entrySet()) {
+					try (PreparedStatement ps = connect.prepareStatement(shape.getKey())) {
+						for (Object[] update : shape.getValue()) {
+							@SuppressWarnings("unchecked")
+							Map<String, Object> values = (Map<String, Object>) update[1];
+							bind(ps, values, update[0]);
+							ps.addBatch();
+						}
+						for (int count : ps.executeBatch())
+							rows += Math.max(count, 0);
+					}
+				}
+				connect.commit();
+			} catch (SQLException e) {
+				connect.rollback();
+				throw e;
+			} finally {
+				connect.setAutoCommit(true);
+			}
+		}
+		return rows;
+	}
+
+	/** The columns that can be updated, in name order. */
+	public List<String> columns(DataSource pool) throws SQLException {
+		List<String> names = new ArrayList<>(columnTypes(pool).keySet());
+		names.remove(keyColumn);
+		return names;
+	}
+
+	// Same columns, same text: the names are sorted and come from the schema, never from the caller.
+	private String sql(Iterable<String> columns) {
+		String key = String.join(",", columns);
+		return sqlByColumns.computeIfAbsent(key, k -> {
+			StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+			String separator = "";
+			for (String column : columns) {
+				sql.append(separator).append(column).append(" = ?");
+				separator = ", ";
+			}
+			return sql.append(" WHERE ").append(keyColumn).append(" = ?").toString();
+		});
+	}
+
+	private static void bind(PreparedStatement ps, Map<String, Object> values, Object key) throws SQLException {
+		int index = 1;
+		for (Object value : values.values())
+			ps.setObject(index++, value);
+		ps.setObject(index, key);
+	}
+
+	// Known, changeable columns only, sorted, with each value converted to the column's type.
+	private Map<String, Object> check(DataSource pool, Map<String, ?> changes) throws SQLException {
+		if (changes.isEmpty())
+			throw new IllegalArgumentException("Nothing to update");
+		Map<String, Integer> types = columnTypes(pool);
+		Map<String, Object> values = new TreeMap<>();
+		for (Map.Entry<String, ?> change : changes.entrySet()) {
+			String column = change.getKey().trim().toLowerCase();
+			Integer type = types.get(column);
+			if (type == null || column.equals(keyColumn))
+				throw new IllegalArgumentException("Cannot update '" + change.getKey() + "' in " + table
+						+ "; expected one of " + columns(pool));
+			if (values.put(column, convert(column, type, change.getValue())) != null)
+				throw new IllegalArgumentException("Column '" + column + "' given twice");
+		}
+		return values;
+	}
+
+	private static Object convert(String column, int type, Object value) {
+		if (!(value instanceof String))
+			return value;
+		String text = ((String) value).trim();
+		try {
+			switch (type) {
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+				return Integer.valueOf(text);
+			case Types.BIGINT:
+				return Long.valueOf(text);
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				return new BigDecimal(text);
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return Double.valueOf(text);
+			default:
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad " + column + " '" + value + "'");
+		}
+	}
+
+	private Map<String, Integer> columnTypes(DataSource pool) throws SQLException {
+		Map<String, Integer> types = columnTypes;
+		if (types != null)
+			return types;
+		synchronized (this) {
+			if (columnTypes != null)
+				return columnTypes;
+			types = new TreeMap<>();
+			try (Connection connect = pool.getConnection()) {
+				DatabaseMetaData meta = connect.getMetaData();
+				// unquoted names are stored lower case by PostgreSQL and upper case by most others
+				for (String name : new String[] { table, table.toLowerCase(), table.toUpperCase() }) {
+					try (ResultSet rs = meta.getColumns(null, null, name, null)) {
+						while (rs.next())
+							types.put(rs.getString("COLUMN_NAME").toLowerCase(), rs.getInt("DATA_TYPE"));
+					}
+					if (!types.isEmpty())
+						break;
+				}
+			}
+			if (types.isEmpty())
+				throw new SQLException("Table " + table + " not found");
+			columnTypes = Collections.unmodifiableMap(types);
+			return columnTypes;
+		}
+	}
+}
@@ -1,20 +1,28 @@
 package com.g1rix.javalearning;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Scanner;
 
+import com.g1rix.javalearning.jdbc.ConnectionPool;
+import com.g1rix.javalearning.util.BatchRunner;
+
 public class Main {
 	
-    private static final String DB_URL ="jdbc:postgresql://localhost:5432/studentdatabase";
-    private static final String DB_USER = "giri";
-    private static final String DB_PASSWORD = "root";
+    private static final String DB_URL = System.getProperty("db.url", "jdbc:postgresql://localhost:5432/studentdatabase");
+    private static final String DB_USER = System.getProperty("db.user", "giri");
+    private static final String DB_PASSWORD = System.getProperty("db.password", "root");
 
 	
 	public static void main(String[] args) {
 		
+		if (args.length >= 2 && args[0].equals("--batch")) {
+			runBatch(args[1]);
+			return;
+		}
+		
         try (
-                Connection connection =DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+                ConnectionPool pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD);
                 Scanner scan = new Scanner(System.in)
         ) {
 
@@ -26,28 +34,32 @@ public class Main {
             	System.out.println("3. Get by ID");
             	System.out.println("4. Update name|course");
             	System.out.println("5. Delete Specific");
-            	System.out.println("6. Exit");
+            	System.out.println("6. Bulk Load from CSV");
+            	System.out.println("7. Exit");
             	System.out.print("Choose: ");
 
             	choice = scan.nextInt();
 
             	switch (choice) {
             	    case 1:
-            	        StudentRecord.insert(connection, scan);
+            	        StudentRecord.insert(pool, scan);
             	        break;
             	    case 2:
-            	        StudentRecord.viewAll(connection);
+            	        StudentRecord.viewAll(pool);
             	        break;
             	    case 3:
-            	        StudentRecord.searchById(connection, scan);
+            	        StudentRecord.searchById(pool, scan);
             	        break;
             	    case 4:
-            	        StudentRecord.updateCourse(connection, scan);
+            	        StudentRecord.updateCourse(pool, scan);
             	        break;
             	    case 5:
-            	        StudentRecord.deleteRecord(connection, scan);
+            	        StudentRecord.deleteRecord(pool, scan);
             	        break;
             	    case 6:
+            	        StudentRecord.bulkLoad(pool, scan);
+            	        break;
+            	    case 7:
             	        StudentRecord.exitApplication();
             	        break;
             	    default:
@@ -55,13 +67,66 @@ public class Main {
             	}
 
 
-            } while (choice != 6);
+            } while (choice != 7);
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 	
+	/**
+	 * Runs one command per line from {@code script} (a file, or "-" for
+	 * stdin) without prompts:
+	 * <pre>
+	 * insert &lt;id&gt; &lt;name&gt; &lt;age&gt; &lt;course&gt;
+	 * view
+	 * page &lt;after id&gt; &lt;count&gt;
+	 * get &lt;id&gt;
+	 * update &lt;id&gt; &lt;column&gt; &lt;value&gt;
+	 * set &lt;id&gt; &lt;column&gt;=&lt;value&gt;...
+	 * delete &lt;id&gt;
+	 * load &lt;csv file&gt;
+	 * </pre>
+	 */
+	private static void runBatch(String script) {
+		try (ConnectionPool pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD)) {
+			new BatchRunner()
+					.command("insert", "<id> <name> <age> <course>", 4, 4,
+							a -> StudentRecord.insert(pool, Integer.parseInt(a[0]), a[1],
+									Integer.parseInt(a[2]), a[3]))
+					.command("view", "", 0, 0, a -> StudentRecord.printStudents(pool))
+					.command("page", "<after id> <count>", 2, 2,
+							a -> StudentRecord.viewAll(pool, Integer.parseInt(a[0]), Integer.parseInt(a[1])))
+					.command("get", "<id>", 1, 1,
+							a -> StudentRecord.searchById(pool, Integer.parseInt(a[0])))
+					.command("update", "<id> <column> <value>", 3, 3,
+							a -> StudentRecord.updateCourse(pool, Integer.parseInt(a[0]), a[1], a[2]))
+					.command("set", "<id> <column>=<value>...", 2, 10,
+							a -> StudentRecord.update(pool, Integer.parseInt(a[0]), changes(a)))
+					.command("delete", "<id>", 1, 1,
+							a -> StudentRecord.deleteRecord(pool, Integer.parseInt(a[0])))
+					.command("load", "<csv file>", 1, 1, a -> StudentRecord.bulkLoad(pool, a[0]))
+					.run(script);
+			System.out.println("Connection pool: " + pool.metrics());
+			System.out.println(StudentRecord.cacheMetrics());
+			System.out.print(pool.queryStats().dump());
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	// "name=Asha" "age=21" after the id, as column to value
+	private static Map<String, String> changes(String[] args) {
+		Map<String, String> changes = new LinkedHashMap<>();
+		for (int i = 1; i < args.length; i++) {
+			int eq = args[i].indexOf('=');
+			if (eq <= 0)
+				throw new IllegalArgumentException("Expected <column>=<value>, got " + args[i]);
+			changes.put(args[i].substring(0, eq), args[i].substring(eq + 1));
+		}
+		return changes;
+	}
+	
 }
 
 
@@ -1,12 +1,38 @@
 package com.g1rix.javalearning;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
+import javax.sql.DataSource;
+
+import com.g1rix.javalearning.jdbc.BulkLoader;
+import com.g1rix.javalearning.jdbc.CacheMetrics;
+import com.g1rix.javalearning.jdbc.KeysetReader;
+import com.g1rix.javalearning.jdbc.LoadResult;
+import com.g1rix.javalearning.jdbc.ReadCache;
+
 public class StudentRecord {
-	public static void insert(Connection connect,Scanner scan) {
+	private static final String COLUMNS = "id, name, age, course";
+	private static final KeysetReader BY_ID = new KeysetReader("STUDENTRECORD", COLUMNS,
+			new String[] { "id" }, false);
+	private static final ReadCache<Integer, Object[]> CACHE = new ReadCache<>("Student cache");
+	private static final ColumnUpdater UPDATER = new ColumnUpdater("STUDENTRECORD", "id");
+	private static final BulkLoader LOADER = new BulkLoader("STUDENTRECORD",
+			new String[] { "id", "name", "age", "course" },
+			new Class<?>[] { Integer.class, String.class, Integer.class, String.class });
+	
+	public static void insert(DataSource pool,Scanner scan) {
 		System.out.println("Insert student records...");
 		try {
 			System.out.println("Enter id");
@@ -21,79 +47,125 @@ public class StudentRecord {
 			System.out.println("Enter course");
 			String course = scan.next();
 			
-			String Query = "INSERT INTO STUDENTRECORD VALUES(?,?,?,?)";
-			
-			PreparedStatement ps = connect.prepareStatement(Query);
+			insert(pool, id, name, age, course);
+		} catch (Exception e) {
+			// TODO: handle exception
+			e.printStackTrace();
+		}
+	}
+	
+	public static void insert(DataSource pool, int id, String name, int age, String course) throws SQLException {
+		int row = insertStudent(pool, id, name, age, course);
+		
+		if(row > 0) {
+			System.out.println("Inserted Record");
+		}
+	}
+	
+	static int insertStudent(DataSource pool, int id, String name, int age, String course) throws SQLException {
+		String Query = "INSERT INTO STUDENTRECORD VALUES(?,?,?,?)";
+		try (Connection connect = pool.getConnection();
+				PreparedStatement ps = connect.prepareStatement(Query)) {
 			ps.setInt(1, id);
 			ps.setString(2, name);
 			ps.setInt(3, age);
 			ps.setString(4, course);
 			
 			int row = ps.executeUpdate();
-			
-			if(row > 0) {
-				System.out.println("Inserted Record");
-			}
-			
-		} catch (Exception e) {
-			// TODO: handle exception
-			e.printStackTrace();
+			CACHE.invalidate(id);
+			return row;
 		}
 	}
 	
-	public static void viewAll(Connection connect) {
+	public static void viewAll(DataSource pool) {
+//		System.out.println("Enter Id");
+//		int id = scan.nextInt();
+		
 		try {
-//			System.out.println("Enter Id");
-//			int id = scan.nextInt();
-			
-			String Query = "SELECT * FROM STUDENTRECORD";
-			
-			PreparedStatement ps = connect.prepareStatement(Query);
-			ResultSet rs = ps.executeQuery();
-			
-			while(rs.next()) {
-				System.out.println(
-						"\nId: " + rs.getInt("id") +
-						"\tName: " + rs.getString("name") +
-						"\tAge: " + rs.getInt("age") +"\t" +
-						"\tCourse: " + rs.getString("course")
-				);
-				
-			}
-			
-		} catch (Exception e) {
-			// TODO: handle exception
-			e.printStackTrace();
+			printStudents(pool);
+		} catch (SQLException e) {
+			System.out.println("Could not list students, database error: " + e.getMessage());
 		}
 	}
 	
-	public static void searchById(Connection connect,Scanner scan) {
+	static void printStudents(DataSource pool) throws SQLException {
+		BY_ID.forEach(pool, StudentRecord::print);
+	}
+	
+	/** Prints up to {@code count} students with an id above {@code afterId}, and where the next page starts. */
+	public static void viewAll(DataSource pool, int afterId, int count) throws SQLException {
+		Object[] last = BY_ID.page(pool, new Object[] { afterId }, count, StudentRecord::print);
+		if (last != null)
+			System.out.println("\nNext page: page " + last[0] + " " + count);
+	}
+	
+	/** Up to {@code count} students with an id above {@code afterId}, as id, name, age, course. */
+	static List<Object[]> students(DataSource pool, int afterId, int count) throws SQLException {
+		List<Object[]> students = new ArrayList<>();
+		BY_ID.page(pool, new Object[] { afterId }, count, rs -> students.add(row(rs)));
+		return students;
+	}
+	
+	private static Object[] row(ResultSet rs) throws SQLException {
+		return new Object[] { rs.getInt("id"), rs.getString("name"), rs.getInt("age"), rs.getString("course") };
+	}
+	
+	private static void print(ResultSet rs) throws SQLException {
+		System.out.println(
+				"\nId: " + rs.getInt("id") +
+				"\tName: " + rs.getString("name") +
+				"\tAge: " + rs.getInt("age") +"\t" +
+				"\tCourse: " + rs.getString("course")
+		);
+	}
+	
+	public static void searchById(DataSource pool,Scanner scan) {
 		try {
 			System.out.println("Enter Id");
 			int id = scan.nextInt();
 			
-			String Query = "SELECT * FROM STUDENTRECORD WHERE ID = ?";
-			
-			PreparedStatement ps = connect.prepareStatement(Query);
-			ps.setInt(1, id);
-			ResultSet rs = ps.executeQuery();
-			if (rs.next()) {
-				System.out.println(
-						"\nId: " + rs.getInt("id") +
-						"\tName: " + rs.getString("name") +
-						"\tAge: " + rs.getInt("age") +"\t" +
-						"\tCourse: " + rs.getString("course")
-				);
-			}
-			
-			
+			searchById(pool, id);
 		} catch (Exception e) {
 			// TODO: handle exception
 			e.printStackTrace();
 		}
 	}
 	
-	public static void updateCourse(Connection connect,Scanner scan) {
+	public static void searchById(DataSource pool, int id) throws SQLException {
+		Object[] student = findById(pool, id);
+		if (student != null) {
+			System.out.println(
+					"\nId: " + student[0] +
+					"\tName: " + student[1] +
+					"\tAge: " + student[2] +"\t" +
+					"\tCourse: " + student[3]
+			);
+		}
+	}
+	
+	/** The student as id, name, age, course, or null if there is none; from the cache when it has it. */
+	static Object[] findById(DataSource pool, int id) throws SQLException {
+		return CACHE.get(id, key -> load(pool, key));
+	}
+	
+	private static Object[] load(DataSource pool, int id) throws SQLException {
+		String Query = "SELECT " + COLUMNS + " FROM STUDENTRECORD WHERE ID = ?";
+		try (Connection connect = pool.getConnection();
+				PreparedStatement ps = connect.prepareStatement(Query)) {
+			ps.setInt(1, id);
+			ResultSet rs = ps.executeQuery();
+			if (!rs.next())
+				return null;
+			return row(rs);
+		}
+	}
+	
+	/** Hit rate and load times of the student lookup cache. */
+	public static CacheMetrics cacheMetrics() {
+		return CACHE.metrics();
+	}
+	
+	public static void updateCourse(DataSource pool,Scanner scan) {
 		try {
 			System.out.println("Enter Id");
 			int id = scan.nextInt();
@@ -105,34 +177,108 @@ public class StudentRecord {
 			System.out.println("Enter course detail");
 			String course = scan.nextLine();
 			
-			String Query = "UPDATE STUDENTRECORD SET " + courseColumn + " = ? WHERE ID = ?";
-			PreparedStatement ps = connect.prepareStatement(Query);
-			ps.setInt(2, id);
-			ps.setString(1, course);
-	        int rows = ps.executeUpdate();
-	        System.out.println(rows + " record updated");
+			updateCourse(pool, id, courseColumn, course);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
 		} catch (Exception e) {
 			// TODO: handle exception
 			e.printStackTrace();
 		}
 	}
 	
+	public static void updateCourse(DataSource pool, int id, String courseColumn, String course) throws SQLException {
+		update(pool, id, Collections.singletonMap(courseColumn, course));
+	}
+	
+	/**
+	 * Sets several columns of one student in one statement, e.g. {name=Asha, age=21}.
+	 * @throws IllegalArgumentException if a column cannot be updated
+	 */
+	public static void update(DataSource pool, int id, Map<String, ?> changes) throws SQLException {
+        int rows = updateFields(pool, id, changes);
+        System.out.println(rows + " record updated");
+	}
+	
+	/**
+	 * Applies the changes for each id in one transaction; see {@link ColumnUpdater#updateAll}.
+	 * @throws IllegalArgumentException if a column cannot be updated
+	 */
+	public static void updateAll(DataSource pool, Map<Integer, ? extends Map<String, ?>> changes) throws SQLException {
+        int rows = updateFields(pool, changes);
+        System.out.println(rows + " record updated");
+	}
+	
+	static int updateFields(DataSource pool, int id, Map<String, ?> changes) throws SQLException {
+		try {
+			return UPDATER.update(pool, id, changes);
+		} finally {
+			CACHE.invalidate(id);
+		}
+	}
+	
+	static int updateFields(DataSource pool, Map<Integer, ? extends Map<String, ?>> changes) throws SQLException {
+		try {
+			return UPDATER.updateAll(pool, changes);
+		} finally {
+			for (Integer id : changes.keySet())
+				CACHE.invalidate(id);
+		}
+	}
+	
 	
-	public static void deleteRecord(Connection connect,Scanner scan) {
+	public static void deleteRecord(DataSource pool,Scanner scan) {
 		try {
 			System.out.println("Enter Id");
 			int id = scan.nextInt();
-			String Query = "DELETE FROM STUDENTRECORD WHERE ID = ?";
-			PreparedStatement ps = connect.prepareStatement(Query);
+			deleteRecord(pool, id);
+		} catch (Exception e) {
+			// TODO: handle exception
+			e.printStackTrace();
+		}
+	}
+	
+	public static void deleteRecord(DataSource pool, int id) throws SQLException {
+		int rows = delete(pool, id);
+        System.out.println(rows + " record updated");
+	}
+	
+	static int delete(DataSource pool, int id) throws SQLException {
+		String Query = "DELETE FROM STUDENTRECORD WHERE ID = ?";
+		try (Connection connect = pool.getConnection();
+				PreparedStatement ps = connect.prepareStatement(Query)) {
 			ps.setInt(1, id);
 			int rows = ps.executeUpdate();
-	        System.out.println(rows + " record updated");
+	        CACHE.invalidate(id);
+	        return rows;
+		}
+	}
+	
+	
+	public static void bulkLoad(DataSource pool,Scanner scan) {
+		System.out.println("Enter CSV file (id,name,age,course per line)");
+		try {
+			bulkLoad(pool, scan.next());
 		} catch (Exception e) {
-			// TODO: handle exception
 			e.printStackTrace();
 		}
 	}
 	
+	/** Loads every student in a CSV file, reporting the rows that were rejected. */
+	public static void bulkLoad(DataSource pool, String file) throws SQLException, IOException {
+		LoadResult result = loadFile(pool, file);
+		for (String error : result.getErrors())
+			System.out.println(error);
+		System.out.println(result);
+	}
+	
+	static LoadResult loadFile(DataSource pool, String file) throws SQLException, IOException {
+		try (Reader in = Files.newBufferedReader(Paths.get(file))) {
+			return LOADER.loadCsv(pool, in);
+		} finally {
+			CACHE.invalidateAll();
+		}
+	}
+	
 	
 	public static void exitApplication() throws InterruptedException {
 		System.out.print("Exiting From Program");
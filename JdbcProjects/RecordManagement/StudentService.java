@@ -0,0 +1,87 @@
+package com.g1rix.javalearning;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import com.g1rix.javalearning.jdbc.AsyncExecutor;
+import com.g1rix.javalearning.jdbc.LoadResult;
+
+/**
+ * The {@link StudentRecord} operations for callers that cannot wait: each
+ * one runs on an {@link AsyncExecutor} and returns a future of its result
+ * instead of printing it. Errors complete the future exceptionally.
+ *
+ * Students come back as {@code Object[] {id, name, age, course}}.
+ */
+public class StudentService {
+	
+	private final DataSource pool;
+	private final AsyncExecutor executor;
+	private final long timeoutMillis;
+	
+	/** Calls time out after the executor's default timeout. */
+	public StudentService(DataSource pool, AsyncExecutor executor) {
+		this(pool, executor, -1);
+	}
+	
+	private StudentService(DataSource pool, AsyncExecutor executor, long timeoutMillis) {
+		this.pool = pool;
+		this.executor = executor;
+		this.timeoutMillis = timeoutMillis;
+	}
+	
+	/** The same service, with calls made through it timing out after {@code millis}. */
+	public StudentService withTimeout(long millis) {
+		return new StudentService(pool, executor, millis);
+	}
+	
+	/** @return the number of rows inserted */
+	public CompletableFuture<Integer> insert(int id, String name, int age, String course) {
+		return submit(() -> StudentRecord.insertStudent(pool, id, name, age, course));
+	}
+	
+	/** Up to {@code count} students with an id above {@code afterId}, in id order. */
+	public CompletableFuture<List<Object[]>> students(int afterId, int count) {
+		return submit(() -> StudentRecord.students(pool, afterId, count));
+	}
+	
+	/** The student, or null if there is none. */
+	public CompletableFuture<Object[]> searchById(int id) {
+		return submit(() -> StudentRecord.findById(pool, id));
+	}
+	
+	/** @return the number of rows updated */
+	public CompletableFuture<Integer> updateCourse(int id, String column, String value) {
+		return update(id, Collections.singletonMap(column, value));
+	}
+	
+	/** Sets several columns of one student in one statement; @return the number of rows updated */
+	public CompletableFuture<Integer> update(int id, Map<String, ?> changes) {
+		return submit(() -> StudentRecord.updateFields(pool, id, changes));
+	}
+	
+	/** Applies the changes for each id in one transaction; @return the number of rows updated */
+	public CompletableFuture<Integer> updateAll(Map<Integer, ? extends Map<String, ?>> changes) {
+		return submit(() -> StudentRecord.updateFields(pool, changes));
+	}
+	
+	/** @return the number of rows deleted */
+	public CompletableFuture<Integer> deleteRecord(int id) {
+		return submit(() -> StudentRecord.delete(pool, id));
+	}
+	
+	public CompletableFuture<LoadResult> bulkLoad(String file) {
+		return submit(() -> StudentRecord.loadFile(pool, file));
+	}
+	
+	private <T> CompletableFuture<T> submit(Callable<T> task) {
+		return timeoutMillis < 0 ? executor.submit(task)
+				: executor.submit(task, timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,207 @@
+package com.g1rix.javalearning.jdbc;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs database calls in the background and hands back a
+ * {@link CompletableFuture} for each.
+ *
+ * Every call gets its own virtual thread when the JVM has them (Java 21
+ * and later), so thousands of calls can wait at once for next to nothing.
+ * Older JVMs fall back to a fixed pool of {@code maxConcurrent} threads,
+ * with the remaining calls queued. Either way at most
+ * {@code db.async.maxConcurrent} calls (default: the pool size) touch the
+ * database at a time; the rest wait for a permit instead of piling up
+ * inside the connection pool.
+ *
+ * Each call has a deadline, {@code db.async.timeoutMs} (default 30 s)
+ * unless given. When the deadline passes or the future is cancelled, the
+ * future completes at once: a call still waiting is dropped, a running
+ * one is interrupted and its statement cancelled on the server. Statements
+ * prepared through {@link ConnectionPool} also get a query timeout for the
+ * time left, so the server gives up on its own as well.
+ */
+public class AsyncExecutor implements AutoCloseable {
+
+    private static final ThreadLocal<Call> CURRENT = new ThreadLocal<>();
+
+    private final ExecutorService workers;
+    private final ScheduledExecutorService timer;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final long defaultTimeoutMillis;
+    private final boolean virtual;
+
+    public AsyncExecutor() {
+        this(Integer.getInteger("db.async.maxConcurrent", Integer.getInteger("db.pool.max", 8)),
+                Long.getLong("db.async.timeoutMs", 30_000L));
+    }
+
+    public AsyncExecutor(int maxConcurrent, long defaultTimeoutMillis) {
+        if (maxConcurrent < 1)
+            throw new IllegalArgumentException("At least one concurrent call needed");
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+
+        ExecutorService perTask = virtualThreadExecutor();
+        this.virtual = perTask != null;
+        this.workers = virtual ? perTask : Executors.newFixedThreadPool(maxConcurrent, daemon("db-async-"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemon("db-async-timer-"));
+    }
+
+    /** Whether calls run on virtual threads rather than the fallback pool. */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        return submit(task, defaultTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the task once a permit is free, failing the future with a
+     * {@link TimeoutException} if it has not finished within the timeout.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task, long timeout, TimeUnit unit) {
+        Call call = new Call(System.nanoTime() + unit.toNanos(timeout));
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        Future<?> work;
+        try {
+            work = workers.submit(() -> run(task, call, result));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        ScheduledFuture<?> deadline = timer.schedule(
+                () -> result.completeExceptionally(new TimeoutException("No result within " + unit.toMillis(timeout) + " ms")),
+                timeout, unit);
+
+        result.whenComplete((value, error) -> {
+            deadline.cancel(false);
+            if (error != null && call.abort())
+                work.cancel(true);
+        });
+        return result;
+    }
+
+    private <T> void run(Callable<T> task, Call call, CompletableFuture<T> result) {
+        if (result.isDone())
+            return;
+        boolean acquired = false;
+        CURRENT.set(call);
+        try {
+            acquired = permits.tryAcquire(call.remainingNanos(), TimeUnit.NANOSECONDS);
+            if (!acquired)
+                result.completeExceptionally(new TimeoutException("No free slot before the deadline"));
+            else if (!result.isDone())
+                result.complete(task.call());
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        } finally {
+            CURRENT.remove();
+            call.finish();
+            if (acquired)
+                permits.release();
+        }
+    }
+
+    /** Calls currently holding a permit. */
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /** Calls waiting for a permit. */
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    /** The call running on this thread, or null outside {@link #submit}. */
+    static Call currentCall() {
+        return CURRENT.get();
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor(), looked up so this still compiles and runs on older JVMs.
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** One submitted call: its deadline, and the statement it is running, if any. */
+    static final class Call {
+        private final long deadline;
+        private Statement running;
+        private boolean aborted;
+        private boolean finished;
+
+        Call(long deadline) {
+            this.deadline = deadline;
+        }
+
+        long remainingNanos() {
+            return deadline - System.nanoTime();
+        }
+
+        /** Called before a statement executes: limits it to the time left. */
+        synchronized void starting(Statement statement) throws SQLException {
+            if (aborted)
+                throw new SQLException("Call was cancelled");
+            long remaining = remainingNanos();
+            if (remaining <= 0)
+                throw new SQLTimeoutException("Deadline passed before the statement ran");
+            statement.setQueryTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + 999_999_999)));
+            running = statement;
+        }
+
+        synchronized void done(Statement statement) {
+            running = null;
+            try {
+                statement.setQueryTimeout(0);
+            } catch (SQLException e) {
+                // the statement is gone; nothing to reset
+            }
+        }
+
+        synchronized void finish() {
+            finished = true;
+        }
+
+        /** Cancels the running statement; false if the call had already finished. */
+        synchronized boolean abort() {
+            if (finished || aborted)
+                return false;
+            aborted = true;
+            if (running != null) {
+                try {
+                    running.cancel();
+                } catch (SQLException e) {
+                    // the statement ended on its own
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.g1rix.javalearning.jdbc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.sql.DataSource;
+
+/**
+ * Loads many rows into one table far faster than one INSERT per row.
+ *
+ * Rows come from CSV, one record per line with the fields in column order
+ * (double-quote fields that contain commas; a first line naming the columns
+ * is skipped), or from an iterator. Each row is checked against the column
+ * types first, and one that does not fit is rejected on its own.
+ *
+ * The rest are sent in chunks of {@code batchSize} rows, one transaction
+ * per chunk: through COPY when the connection comes from the PostgreSQL
+ * driver, otherwise as one JDBC batch of INSERTs. If the database refuses a
+ * chunk, for example over a duplicate id or a failed CHECK, the chunk is
+ * rolled back and inserted again row by row, each row behind a savepoint.
+ * Only the offending rows are rejected and the load goes on.
+ */
+public class BulkLoader {
+
+    private static final int MAX_ERRORS = 100;
+
+    private final String table;
+    private final String[] columns;
+    private final Class<?>[] types;
+    private final String insertSql;
+    private final String copySql;
+    private int batchSize = Integer.getInteger("db.load.batchSize", 1000);
+    private boolean useCopy = true;
+
+    /**
+     * @param types {@code Integer.class} or {@code String.class} per column
+     */
+    public BulkLoader(String table, String[] columns, Class<?>[] types) {
+        if (columns.length != types.length)
+            throw new IllegalArgumentException("One type per column needed");
+        this.table = table;
+        this.columns = columns.clone();
+        this.types = types.clone();
+
+        String names = String.join(", ", columns);
+        StringBuilder marks = new StringBuilder();
+        for (int i = 0; i < columns.length; i++)
+            marks.append(i == 0 ? "?" : ", ?");
+        this.insertSql = "INSERT INTO " + table + " (" + names + ") VALUES (" + marks + ")";
+        this.copySql = "COPY " + table + " (" + names + ") FROM STDIN WITH (FORMAT csv)";
+    }
+
+    /** Rows per chunk; each chunk is one round trip and one commit. */
+    public BulkLoader batchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /** Whether COPY may be used when the driver supports it; on by default. */
+    public BulkLoader useCopy(boolean useCopy) {
+        this.useCopy = useCopy;
+        return this;
+    }
+
+    public LoadResult loadCsv(DataSource pool, Reader reader) throws SQLException, IOException {
+        BufferedReader in = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader);
+        return load(pool, new Rows("Line") {
+            @Override
+            Object[] read() throws IOException {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    position++;
+                    if (line.trim().isEmpty())
+                        continue;
+                    List<String> fields = splitCsv(line);
+                    if (position == 1 && isHeader(fields))
+                        continue;
+                    return parse(fields);
+                }
+                return null;
+            }
+        });
+    }
+
+    /** Loads rows given as values in column order. */
+    public LoadResult load(DataSource pool, Iterator<Object[]> rows) throws SQLException, IOException {
+        return load(pool, new Rows("Row") {
+            @Override
+            Object[] read() {
+                if (!rows.hasNext())
+                    return null;
+                position++;
+                return check(rows.next());
+            }
+        });
+    }
+
+    private LoadResult load(DataSource pool, Rows rows) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Load load = new Load();
+        try (Connection connect = pool.getConnection()) {
+            boolean autoCommit = connect.getAutoCommit();
+            connect.setAutoCommit(false);
+            try {
+                load.copyManager = useCopy ? copyManager(connect) : null;
+                List<Object[]> chunk = new ArrayList<>(batchSize);
+                List<Long> positions = new ArrayList<>(batchSize);
+                while (true) {
+                    Object[] row;
+                    try {
+                        row = rows.read();
+                    } catch (IllegalArgumentException e) {
+                        load.reject(rows.label + " " + rows.position + ": " + e.getMessage());
+                        continue;
+                    }
+                    if (row == null)
+                        break;
+                    chunk.add(row);
+                    positions.add(rows.position);
+                    if (chunk.size() == batchSize) {
+                        flush(connect, load, chunk, positions, rows.label);
+                        chunk.clear();
+                        positions.clear();
+                    }
+                }
+                if (!chunk.isEmpty())
+                    flush(connect, load, chunk, positions, rows.label);
+            } finally {
+                connect.setAutoCommit(autoCommit);
+            }
+        }
+        return new LoadResult(load.loaded, load.rejected, load.errors,
+                (System.nanoTime() - start) / 1_000_000, load.copyManager != null);
+    }
+
+    private void flush(Connection connect, Load load, List<Object[]> chunk, List<Long> positions,
+                       String label) throws SQLException {
+        try {
+            if (load.copyManager != null)
+                copy(load.copyManager, chunk);
+            else
+                batch(connect, chunk);
+            connect.commit();
+            load.loaded += chunk.size();
+        } catch (SQLException e) {
+            connect.rollback();
+            if (isConnectionError(e))
+                throw e;
+            insertOneByOne(connect, load, chunk, positions, label);
+        }
+    }
+
+    private void batch(Connection connect, List<Object[]> chunk) throws SQLException {
+        try (PreparedStatement ps = connect.prepareStatement(insertSql)) {
+            for (Object[] row : chunk) {
+                bind(ps, row);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void insertOneByOne(Connection connect, Load load, List<Object[]> chunk, List<Long> positions,
+                                String label) throws SQLException {
+        try (PreparedStatement ps = connect.prepareStatement(insertSql)) {
+            for (int i = 0; i < chunk.size(); i++) {
+                Savepoint savepoint = connect.setSavepoint();
+                try {
+                    bind(ps, chunk.get(i));
+                    ps.executeUpdate();
+                    connect.releaseSavepoint(savepoint);
+                    load.loaded++;
+                } catch (SQLException e) {
+                    if (isConnectionError(e))
+                        throw e;
+                    connect.rollback(savepoint);
+                    load.reject(label + " " + positions.get(i) + ": " + e.getMessage());
+                }
+            }
+        }
+        connect.commit();
+    }
+
+    private void bind(PreparedStatement ps, Object[] row) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] == null)
+                ps.setNull(i + 1, types[i] == Integer.class ? Types.INTEGER : Types.VARCHAR);
+            else
+                ps.setObject(i + 1, row[i]);
+        }
+    }
+
+    private void copy(Object copyManager, List<Object[]> chunk) throws SQLException {
+        StringBuilder csv = new StringBuilder(chunk.size() * 16 * columns.length);
+        for (Object[] row : chunk) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0)
+                    csv.append(',');
+                if (row[i] instanceof String)
+                    csv.append('"').append(((String) row[i]).replace("\"", "\"\"")).append('"');
+                else if (row[i] != null)
+                    csv.append(row[i]);
+            }
+            csv.append('\n');
+        }
+
+        try {
+            Method copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+            copyIn.invoke(copyManager, copySql, new StringReader(csv.toString()));
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException)
+                throw (SQLException) e.getCause();
+            throw new SQLException("COPY into " + table + " failed", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("COPY into " + table + " failed", e);
+        }
+    }
+
+    // The driver's CopyManager, looked up by reflection so the driver is only needed at run time.
+    private static Object copyManager(Connection connect) {
+        try {
+            Class<?> pgConnection = Class.forName("org.postgresql.PGConnection");
+            if (!connect.isWrapperFor(pgConnection))
+                return null;
+            return pgConnection.getMethod("getCopyAPI").invoke(connect.unwrap(pgConnection));
+        } catch (ReflectiveOperationException | SQLException e) {
+            return null;
+        }
+    }
+
+    private static boolean isConnectionError(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+
+    private boolean isHeader(List<String> fields) {
+        if (fields.size() != columns.length)
+            return false;
+        for (int i = 0; i < columns.length; i++) {
+            if (!fields.get(i).trim().equalsIgnoreCase(columns[i]))
+                return false;
+        }
+        return true;
+    }
+
+    private Object[] parse(List<String> fields) {
+        if (fields.size() != columns.length)
+            throw new IllegalArgumentException("Expected " + columns.length + " fields, found " + fields.size());
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            String field = fields.get(i);
+            if (types[i] != Integer.class) {
+                row[i] = field;
+            } else if (!field.trim().isEmpty()) {
+                try {
+                    row[i] = Integer.valueOf(field.trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad " + columns[i] + " '" + field + "'");
+                }
+            }
+        }
+        return row;
+    }
+
+    private Object[] check(Object[] row) {
+        if (row == null || row.length != columns.length)
+            throw new IllegalArgumentException("Expected " + columns.length + " values");
+        for (int i = 0; i < columns.length; i++) {
+            if (row[i] != null && !types[i].isInstance(row[i]))
+                throw new IllegalArgumentException("Bad " + columns[i] + " '" + row[i] + "'");
+        }
+        return row;
+    }
+
+    // Fields of one CSV line; "" inside a quoted field is a literal quote.
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"')
+                    field.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+                    field.append(line.charAt(++i));
+                else
+                    quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private abstract static class Rows {
+        final String label;
+        long position;
+
+        Rows(String label) {
+            this.label = label;
+        }
+
+        /** The next row, or null at the end; IllegalArgumentException for a bad one. */
+        abstract Object[] read() throws IOException;
+    }
+
+    private static final class Load {
+        Object copyManager;
+        long loaded;
+        long rejected;
+        final List<String> errors = new ArrayList<>();
+
+        void reject(String error) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS)
+                errors.add(error);
+        }
+    }
+}
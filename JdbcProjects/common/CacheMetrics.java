@@ -0,0 +1,79 @@
+package com.g1rix.javalearning.jdbc;
+
+public class CacheMetrics {
+
+    private final String name;
+    private final int size;
+    private final long hits;
+    private final long misses;
+    private final long loadNanos;
+    private final long maxLoadNanos;
+    private final long evictions;
+    private final long rejections;
+    private final long expirations;
+
+    public CacheMetrics(String name, int size, long hits, long misses, long loadNanos, long maxLoadNanos,
+                        long evictions, long rejections, long expirations) {
+        this.name = name;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.loadNanos = loadNanos;
+        this.maxLoadNanos = maxLoadNanos;
+        this.evictions = evictions;
+        this.rejections = rejections;
+        this.expirations = expirations;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /** Lookups that went to the database; each one is a round trip. */
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public double getAverageLoadMillis() {
+        return misses == 0 ? 0 : loadNanos / 1e6 / misses;
+    }
+
+    public double getMaxLoadMillis() {
+        return maxLoadNanos / 1e6;
+    }
+
+    /** Entries dropped to make room for a more frequently used key. */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** Loaded values not kept because the cache was full of more frequently used keys. */
+    public long getRejections() {
+        return rejections;
+    }
+
+    public long getExpirations() {
+        return expirations;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d cached, %d hits, %d misses (%.0f%% hit rate), load avg %.2f ms max %.2f ms, "
+                        + "%d evicted, %d rejected, %d expired",
+                name, size, hits, misses, getHitRate() * 100, getAverageLoadMillis(), getMaxLoadMillis(),
+                evictions, rejections, expirations);
+    }
+}
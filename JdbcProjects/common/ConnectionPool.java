@@ -0,0 +1,667 @@
+package com.g1rix.javalearning.jdbc;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * A pool of database connections shared by the whole application.
+ *
+ * {@link #getConnection} hands out an idle connection, opens a new one while
+ * fewer than the maximum are open, or else waits up to the acquire timeout.
+ * Closing the connection returns it: statements opened on it are closed and
+ * an unfinished transaction is rolled back. A connection that has been idle
+ * for more than a second is checked with {@code isValid} before it is handed
+ * out, and one that failed with a connection error is discarded instead of
+ * returned, so a restarted database is reconnected to transparently.
+ *
+ * Each connection keeps its prepared statements in an LRU cache keyed by
+ * SQL text, so preparing the same query again skips the parse. What
+ * {@code prepareStatement} returns is a lease on the cached statement:
+ * closing it closes its result sets and clears its parameters, and the
+ * statement is only really closed when it is evicted or the connection
+ * goes away.
+ *
+ * A housekeeping thread closes connections idle for longer than the idle
+ * timeout while more than the minimum are open, opens new ones up to the
+ * minimum, and reports connections borrowed for longer than the leak
+ * threshold together with where they were borrowed.
+ *
+ * Sizes and timeouts default to the system properties {@code db.pool.min}
+ * (1), {@code db.pool.max} (8), {@code db.pool.timeoutMs} (30000),
+ * {@code db.pool.idleMs} (600000), {@code db.pool.leakMs} (60000, 0 to
+ * turn leak detection off) and {@code db.pool.statementCacheSize} (32
+ * statements per connection, 0 to turn the cache off).
+ *
+ * Every execution of a prepared statement is timed into {@link #queryStats},
+ * which is also registered over JMX and, with {@code db.stats.dumpMs} set,
+ * printed at that interval.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    private static final long VALIDATE_AFTER_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final long HOUSEKEEPING_MS = 30_000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMs;
+    private final long idleTimeoutNanos;
+    private final long leakThresholdNanos;
+    private final int statementCacheSize;
+
+    // most recently returned first, so the longest idle are at the tail
+    private final LinkedBlockingDeque<Pooled> idle = new LinkedBlockingDeque<>();
+    private final Set<Handle> borrowed = ConcurrentHashMap.newKeySet();
+    // one permit per connection that may be borrowed
+    private final Semaphore permits;
+    private final AtomicInteger open = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    private PrintWriter logWriter;
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder broken = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder statementEvictions = new LongAdder();
+    private final QueryStats queryStats = new QueryStats();
+
+    public ConnectionPool(String url, String user, String password) throws SQLException {
+        this(url, user, password, Integer.getInteger("db.pool.min", 1), Integer.getInteger("db.pool.max", 8),
+                Long.getLong("db.pool.timeoutMs", 30_000), Long.getLong("db.pool.idleMs", 600_000),
+                Long.getLong("db.pool.leakMs", 60_000), Integer.getInteger("db.pool.statementCacheSize", 32));
+    }
+
+    /**
+     * Opens {@code minSize} connections straight away, so a wrong URL or
+     * password fails here rather than on first use.
+     */
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long acquireTimeoutMs, long idleTimeoutMs, long leakThresholdMs,
+                          int statementCacheSize) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+            throw new IllegalArgumentException("Invalid pool size " + minSize + ".." + maxSize);
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMs);
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        try {
+            for (int i = 0; i < minSize; i++)
+                idle.offerLast(openConnection());
+        } catch (SQLException e) {
+            closeIdle();
+            throw e;
+        }
+
+        long period = Math.min(HOUSEKEEPING_MS, idleTimeoutMs / 2);
+        if (leakThresholdMs > 0)
+            period = Math.min(period, leakThresholdMs / 2);
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, Math.max(100, period), TimeUnit.MILLISECONDS);
+        long dumpMs = Long.getLong("db.stats.dumpMs", 0);
+        if (dumpMs > 0)
+            housekeeper.scheduleAtFixedRate(() -> System.out.print(queryStats.dump()), dumpMs, dumpMs,
+                    TimeUnit.MILLISECONDS);
+        queryStats.register();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed)
+            throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTransientConnectionException("No connection available after "
+                        + acquireTimeoutMs + " ms, all " + maxSize + " in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            Handle handle = new Handle(take());
+            borrowed.add(handle);
+            long nanos = System.nanoTime() - start;
+            borrows.increment();
+            acquireNanos.add(nanos);
+            maxAcquireNanos.accumulateAndGet(nanos, Math::max);
+            return handle.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public PoolMetrics metrics() {
+        return new PoolMetrics(open.get(), idle.size(), borrowed.size(), borrows.sum(), timeouts.sum(),
+                created.sum(), evicted.sum(), validationFailures.sum(), broken.sum(), leaks.sum(),
+                acquireNanos.sum(), maxAcquireNanos.get(), statementHits.sum(), statementMisses.sum(),
+                statementEvictions.sum());
+    }
+
+    /** Timings of the statements run through this pool. */
+    public QueryStats queryStats() {
+        return queryStats;
+    }
+
+    /** Closes the idle connections; borrowed ones are closed as they are returned. */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        queryStats.unregister();
+        closeIdle();
+    }
+
+    private Pooled take() throws SQLException {
+        Pooled pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.nanoTime() - pooled.lastUsed < VALIDATE_AFTER_NANOS || isValid(pooled.raw))
+                return pooled;
+            validationFailures.increment();
+            discard(pooled);
+        }
+        return openConnection();
+    }
+
+    private Pooled openConnection() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, user, password);
+        open.incrementAndGet();
+        created.increment();
+        return new Pooled(raw);
+    }
+
+    private void release(Handle handle) {
+        borrowed.remove(handle);
+        Pooled pooled = handle.pooled;
+        for (Statement statement : handle.statements) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // the connection is checked below
+            }
+        }
+
+        boolean reusable = !handle.broken && !closed;
+        if (reusable) {
+            try {
+                if (!pooled.raw.getAutoCommit()) {
+                    pooled.raw.rollback();
+                    pooled.raw.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+        if (reusable) {
+            pooled.lastUsed = System.nanoTime();
+            idle.offerFirst(pooled);
+        } else {
+            if (!closed)
+                broken.increment();
+            discard(pooled);
+        }
+        permits.release();
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.nanoTime();
+            Pooled pooled;
+            while (open.get() > minSize && (pooled = idle.peekLast()) != null
+                    && now - pooled.lastUsed > idleTimeoutNanos) {
+                if (idle.removeLastOccurrence(pooled)) {
+                    evicted.increment();
+                    discard(pooled);
+                }
+            }
+
+            while (!closed && open.get() < minSize)
+                idle.offerLast(openConnection());
+
+            if (leakThresholdNanos > 0) {
+                for (Handle handle : borrowed) {
+                    long held = now - handle.borrowedAt;
+                    if (handle.leakReported || held < leakThresholdNanos)
+                        continue;
+                    handle.leakReported = true;
+                    leaks.increment();
+                    System.out.println("Possible connection leak: borrowed "
+                            + TimeUnit.NANOSECONDS.toMillis(held) + " ms ago and not returned");
+                    handle.borrowSite.printStackTrace();
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean isValid(Connection raw) {
+        try {
+            return raw.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // connection errors have SQLState class 08
+    private static boolean isFatal(SQLException e) {
+        return e instanceof SQLNonTransientConnectionException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("08"));
+    }
+
+    private void discard(Pooled pooled) {
+        open.decrementAndGet();
+        pooled.closeStatements();
+        closeQuietly(pooled.raw);
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // it is being thrown away anyway
+        }
+    }
+
+    private void closeIdle() {
+        Pooled pooled;
+        while ((pooled = idle.pollFirst()) != null)
+            discard(pooled);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The pool only connects as its configured user");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this))
+            return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    private final class Pooled {
+        final Connection raw;
+        volatile long lastUsed = System.nanoTime();
+        // only touched by the borrower, least recently used first
+        final Map<String, CachedStatement> statements =
+                new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                        if (size() <= statementCacheSize)
+                            return false;
+                        statementEvictions.increment();
+                        eldest.getValue().evict();
+                        return true;
+                    }
+                };
+
+        Pooled(Connection raw) {
+            this.raw = raw;
+        }
+
+        PreparedStatement prepare(String sql, Handle handle) throws SQLException {
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && !cached.inUse) {
+                statementHits.increment();
+            } else {
+                statementMisses.increment();
+                CachedStatement prepared = new CachedStatement(raw.prepareStatement(sql), queryStats.operation(sql));
+                // the same SQL still open elsewhere on this connection, or no cache: this copy is closed after use
+                if (cached == null && statementCacheSize > 0)
+                    statements.put(sql, prepared);
+                else
+                    prepared.evicted = true;
+                cached = prepared;
+            }
+            cached.inUse = true;
+            return new Lease(cached, handle).proxy;
+        }
+
+        void closeStatements() {
+            for (CachedStatement cached : statements.values())
+                cached.evict();
+            statements.clear();
+        }
+    }
+
+    private static final class CachedStatement {
+        final PreparedStatement raw;
+        final QueryStats.Operation operation;
+        boolean inUse;
+        boolean evicted;
+
+        CachedStatement(PreparedStatement raw, QueryStats.Operation operation) {
+            this.raw = raw;
+            this.operation = operation;
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse)
+                closeQuietly(raw);
+        }
+
+        void release() {
+            inUse = false;
+            if (!evicted) {
+                try {
+                    raw.clearParameters();
+                    return;
+                } catch (SQLException e) {
+                    evicted = true;
+                }
+            }
+            closeQuietly(raw);
+        }
+    }
+
+    // What a caller gets: a proxy of the pooled connection whose close() returns it.
+    private final class Handle implements InvocationHandler {
+        final Pooled pooled;
+        final Connection proxy;
+        final long borrowedAt = System.nanoTime();
+        final Exception borrowSite;
+        final List<Statement> statements = new ArrayList<>();
+        volatile boolean released;
+        boolean broken;
+        boolean leakReported;
+
+        Handle(Pooled pooled) {
+            this.pooled = pooled;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, this);
+            this.borrowSite = leakThresholdNanos > 0 ? new Exception("Connection borrowed here") : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (released)
+                            return null;
+                        released = true;
+                    }
+                    release(this);
+                    return null;
+                case "isClosed":
+                    return released || pooled.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + pooled.raw;
+                default:
+                    break;
+            }
+            if (released)
+                throw new SQLException("Connection is closed");
+
+            try {
+                Object result = method.getName().equals("prepareStatement") && args.length == 1
+                        ? pooled.prepare((String) args[0], this)
+                        : method.invoke(pooled.raw, args);
+                if (result instanceof Statement) {
+                    synchronized (this) {
+                        statements.add((Statement) result);
+                    }
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw failed(e.getCause());
+            } catch (SQLException e) {
+                throw failed(e);
+            }
+        }
+
+        Throwable failed(Throwable cause) {
+            if (cause instanceof SQLException && isFatal((SQLException) cause))
+                broken = true;
+            return cause;
+        }
+    }
+
+    // What prepareStatement returns: a proxy of a cached statement whose close() hands it back.
+    // It also notes the bind parameters, for the slow query log, and times each execution.
+    private final class Lease implements InvocationHandler {
+        final CachedStatement cached;
+        final Handle handle;
+        final PreparedStatement proxy;
+        final List<ResultSet> results = new ArrayList<>();
+        Object[] parameters;
+        int batched;
+        boolean closed;
+
+        Lease(CachedStatement cached, Handle handle) {
+            this.cached = cached;
+            this.handle = handle;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        for (ResultSet rs : results)
+                            closeQuietly(rs);
+                        cached.release();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return handle.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached " + cached.raw;
+                default:
+                    break;
+            }
+            if (closed)
+                throw new SQLException("Statement is closed");
+
+            String name = method.getName();
+            if (name.startsWith("execute"))
+                return execute(method, args);
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer)
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            else if (name.equals("addBatch"))
+                batched++;
+            else if (name.equals("clearBatch"))
+                batched = 0;
+            else if (name.equals("clearParameters"))
+                parameters = null;
+            try {
+                return method.invoke(cached.raw, args);
+            } catch (InvocationTargetException e) {
+                throw handle.failed(e.getCause());
+            }
+        }
+
+        Object execute(Method method, Object[] args) throws Throwable {
+            AsyncExecutor.Call call = AsyncExecutor.currentCall();
+            if (call != null)
+                call.starting(cached.raw);
+            long start = System.nanoTime();
+            Object result = null;
+            boolean failed = true;
+            try {
+                result = method.invoke(cached.raw, args);
+                failed = false;
+                if (result instanceof ResultSet) {
+                    result = new CountedResults((ResultSet) result, this).proxy;
+                    results.add((ResultSet) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw handle.failed(e.getCause());
+            } finally {
+                queryStats.executed(cached.operation, System.nanoTime() - start, rows(result), failed, parameters,
+                        batched);
+                batched = 0;
+                if (call != null)
+                    call.done(cached.raw);
+            }
+        }
+
+        void bind(int index, Object value) {
+            if (index < 1)
+                return;
+            if (parameters == null || parameters.length <= index)
+                parameters = Arrays.copyOf(parameters == null ? new Object[0] : parameters, index + 1);
+            parameters[index] = value;
+        }
+    }
+
+    // Rows updated as executeUpdate or executeBatch reports them; -1 for a result set, counted as it is read.
+    private static long rows(Object result) {
+        if (result instanceof Number)
+            return ((Number) result).longValue();
+        long rows = 0;
+        if (result instanceof int[]) {
+            for (int count : (int[]) result)
+                rows += Math.max(count, 0);
+            return rows;
+        }
+        if (result instanceof long[]) {
+            for (long count : (long[]) result)
+                rows += Math.max(count, 0);
+            return rows;
+        }
+        return -1;
+    }
+
+    // What a lease's executeQuery returns: counts the rows read and adds them to the statement's figures on close.
+    private final class CountedResults implements InvocationHandler {
+        final ResultSet raw;
+        final Lease lease;
+        final ResultSet proxy;
+        long rows;
+        boolean counted;
+
+        CountedResults(ResultSet raw, Lease lease) {
+            this.raw = raw;
+            this.lease = lease;
+            this.proxy = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    boolean more = raw.next();
+                    if (more)
+                        rows++;
+                    return more;
+                case "close":
+                    if (!counted) {
+                        counted = true;
+                        queryStats.rowsRead(lease.cached.operation, rows);
+                    }
+                    raw.close();
+                    return null;
+                case "getStatement":
+                    return lease.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Counted " + raw;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
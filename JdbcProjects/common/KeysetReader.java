@@ -0,0 +1,147 @@
+package com.g1rix.javalearning.jdbc;
+
+import java.sql.*;
+import javax.sql.DataSource;
+
+/**
+ * Reads a table in key order one page at a time, so memory and latency
+ * stay the same however large the table grows.
+ *
+ * Each page is one query that continues after the last key seen, for
+ * example {@code WHERE (salary, id) < (?, ?) ORDER BY salary DESC, id DESC
+ * LIMIT ?}. With an index on the key this reads only the page itself,
+ * unlike OFFSET, which has to step over every row before it. The key must
+ * be unique, so end it with the primary key.
+ *
+ * Rows are fetched {@code fetchSize} at a time within a page. The
+ * PostgreSQL driver only does that inside a transaction, so autocommit is
+ * switched off while a page is read. A connection is borrowed per page,
+ * so a long listing never holds one between pages.
+ */
+public class KeysetReader {
+
+    /** Receives each row; the cursor is already on it. */
+    public interface RowHandler {
+        void row(ResultSet rs) throws SQLException;
+    }
+
+    private final String[] keys;
+    private final String firstSql;
+    private final String nextSql;
+    private int pageSize = Integer.getInteger("db.read.pageSize", 500);
+    private int fetchSize = Integer.getInteger("db.read.fetchSize", 100);
+
+    /**
+     * @param columns    the columns the handler reads, comma separated
+     * @param keys       columns or expressions ordering the rows, primary key last
+     * @param descending whether to read from the largest key down
+     */
+    public KeysetReader(String table, String columns, String[] keys, boolean descending) {
+        if (keys.length == 0)
+            throw new IllegalArgumentException("At least one key column needed");
+        this.keys = keys.clone();
+
+        StringBuilder select = new StringBuilder("SELECT ").append(columns);
+        StringBuilder order = new StringBuilder(" ORDER BY ");
+        StringBuilder left = new StringBuilder();
+        StringBuilder right = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            select.append(", ").append(keys[i]).append(" AS keyset_").append(i + 1);
+            order.append(i == 0 ? "" : ", ").append(keys[i]).append(descending ? " DESC" : "");
+            left.append(i == 0 ? "" : ", ").append(keys[i]);
+            right.append(i == 0 ? "?" : ", ?");
+        }
+        select.append(" FROM ").append(table);
+
+        String after = keys.length == 1
+                ? keys[0] + (descending ? " < ?" : " > ?")
+                : "(" + left + ")" + (descending ? " < " : " > ") + "(" + right + ")";
+        this.firstSql = select + order.toString() + " LIMIT ?";
+        this.nextSql = select + " WHERE " + after + order + " LIMIT ?";
+    }
+
+    /** Rows per query; each page is one short transaction on its own connection. */
+    public KeysetReader pageSize(int pageSize) {
+        if (pageSize < 1)
+            throw new IllegalArgumentException("Page size must be positive");
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /** Rows the driver fetches per round trip within a page. */
+    public KeysetReader fetchSize(int fetchSize) {
+        if (fetchSize < 0)
+            throw new IllegalArgumentException("Fetch size must not be negative");
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Passes every row to the handler in key order, page by page.
+     *
+     * @return the number of rows read
+     */
+    public long forEach(DataSource pool, RowHandler handler) throws SQLException {
+        long rows = 0;
+        Object[] after = null;
+        Page page;
+        do {
+            page = read(pool, after, pageSize, handler);
+            rows += page.rows;
+            after = page.last;
+        } while (page.rows == pageSize);
+        return rows;
+    }
+
+    /**
+     * Passes up to {@code limit} rows after the given key to the handler.
+     *
+     * @param after the key of the last row already seen, or null to start at the beginning
+     * @return the key of the last row read, to pass back for the next page, or null if there were no rows
+     */
+    public Object[] page(DataSource pool, Object[] after, int limit, RowHandler handler) throws SQLException {
+        if (after != null && after.length != keys.length)
+            throw new IllegalArgumentException("Expected " + keys.length + " key values");
+        return read(pool, after, limit, handler).last;
+    }
+
+    private Page read(DataSource pool, Object[] after, int limit, RowHandler handler) throws SQLException {
+        Page page = new Page();
+        String query = after == null ? firstSql : nextSql;
+        try (Connection connect = pool.getConnection()) {
+            boolean cursor = fetchSize > 0 && connect.getAutoCommit();
+            if (cursor)
+                connect.setAutoCommit(false);
+            try (PreparedStatement ps = connect.prepareStatement(query)) {
+                int index = 1;
+                if (after != null) {
+                    for (Object key : after)
+                        ps.setObject(index++, key);
+                }
+                ps.setInt(index, limit);
+                ps.setFetchSize(fetchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        handler.row(rs);
+                        page.rows++;
+                        if (page.last == null)
+                            page.last = new Object[keys.length];
+                        for (int i = 0; i < keys.length; i++)
+                            page.last[i] = rs.getObject("keyset_" + (i + 1));
+                    }
+                }
+            } finally {
+                if (cursor) {
+                    connect.rollback();
+                    connect.setAutoCommit(true);
+                }
+            }
+        }
+        return page;
+    }
+
+    private static final class Page {
+        int rows;
+        Object[] last;
+    }
+}
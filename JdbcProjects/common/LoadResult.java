@@ -0,0 +1,49 @@
+package com.g1rix.javalearning.jdbc;
+
+import java.util.Collections;
+import java.util.List;
+
+public class LoadResult {
+
+    private final long loaded;
+    private final long rejected;
+    private final List<String> errors;
+    private final long elapsedMillis;
+    private final boolean copy;
+
+    public LoadResult(long loaded, long rejected, List<String> errors, long elapsedMillis, boolean copy) {
+        this.loaded = loaded;
+        this.rejected = rejected;
+        this.errors = Collections.unmodifiableList(errors);
+        this.elapsedMillis = elapsedMillis;
+        this.copy = copy;
+    }
+
+    public long getLoaded() {
+        return loaded;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    /** Why the first rejected rows were rejected; {@link #getRejected()} counts all of them. */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /** Whether the rows went through COPY rather than batched INSERTs. */
+    public boolean isCopy() {
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return loaded + " loaded, " + rejected + " rejected in " + elapsedMillis + " ms"
+                + (copy ? " (COPY)" : " (batched INSERT)");
+    }
+}
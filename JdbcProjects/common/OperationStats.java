@@ -0,0 +1,78 @@
+package com.g1rix.javalearning.jdbc;
+
+/** A snapshot of one statement's figures from {@link QueryStats}. */
+public class OperationStats {
+
+    private final String sql;
+    private final long count;
+    private final long errors;
+    private final long rows;
+    private final long slow;
+    private final long totalNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    public OperationStats(String sql, long count, long errors, long rows, long slow, long totalNanos,
+                          long p50Nanos, long p99Nanos, long maxNanos) {
+        this.sql = sql;
+        this.count = count;
+        this.errors = errors;
+        this.rows = rows;
+        this.slow = slow;
+        this.totalNanos = totalNanos;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /** Executions, failed ones included. */
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /** Rows updated, or read from the result sets closed so far. */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getSlow() {
+        return slow;
+    }
+
+    public double getTotalMillis() {
+        return totalNanos / 1e6;
+    }
+
+    public double getMeanMillis() {
+        return count == 0 ? 0 : totalNanos / 1e6 / count;
+    }
+
+    /** Median execution time, to within an eighth. */
+    public double getP50Millis() {
+        return p50Nanos / 1e6;
+    }
+
+    /** 99th percentile execution time, to within an eighth. */
+    public double getP99Millis() {
+        return p99Nanos / 1e6;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: count=%d, errors=%d, rows=%d, slow=%d, p50=%.3f ms, p99=%.3f ms, max=%.3f ms",
+                sql, count, errors, rows, slow, getP50Millis(), getP99Millis(), getMaxMillis());
+    }
+}
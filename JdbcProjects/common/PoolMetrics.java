@@ -0,0 +1,125 @@
+package com.g1rix.javalearning.jdbc;
+
+public class PoolMetrics {
+
+    private final int open;
+    private final int idle;
+    private final int active;
+    private final long borrows;
+    private final long timeouts;
+    private final long created;
+    private final long evicted;
+    private final long validationFailures;
+    private final long broken;
+    private final long leaks;
+    private final long acquireNanos;
+    private final long maxAcquireNanos;
+    private final long statementHits;
+    private final long statementMisses;
+    private final long statementEvictions;
+
+    public PoolMetrics(int open, int idle, int active, long borrows, long timeouts, long created,
+                       long evicted, long validationFailures, long broken, long leaks,
+                       long acquireNanos, long maxAcquireNanos, long statementHits,
+                       long statementMisses, long statementEvictions) {
+        this.open = open;
+        this.idle = idle;
+        this.active = active;
+        this.borrows = borrows;
+        this.timeouts = timeouts;
+        this.created = created;
+        this.evicted = evicted;
+        this.validationFailures = validationFailures;
+        this.broken = broken;
+        this.leaks = leaks;
+        this.acquireNanos = acquireNanos;
+        this.maxAcquireNanos = maxAcquireNanos;
+        this.statementHits = statementHits;
+        this.statementMisses = statementMisses;
+        this.statementEvictions = statementEvictions;
+    }
+
+    public int getOpen() {
+        return open;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    /** Connections currently borrowed. */
+    public int getActive() {
+        return active;
+    }
+
+    public long getBorrows() {
+        return borrows;
+    }
+
+    /** Borrows that gave up because every connection stayed in use. */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /** Connections opened so far, including replacements. */
+    public long getCreated() {
+        return created;
+    }
+
+    /** Connections closed for being idle too long. */
+    public long getEvicted() {
+        return evicted;
+    }
+
+    /** Idle connections found dead when about to be handed out. */
+    public long getValidationFailures() {
+        return validationFailures;
+    }
+
+    /** Connections discarded on return after a connection error. */
+    public long getBroken() {
+        return broken;
+    }
+
+    /** Borrows reported as possible leaks. */
+    public long getLeaks() {
+        return leaks;
+    }
+
+    public double getAverageAcquireMicros() {
+        return borrows == 0 ? 0 : acquireNanos / 1e3 / borrows;
+    }
+
+    public double getMaxAcquireMicros() {
+        return maxAcquireNanos / 1e3;
+    }
+
+    /** Prepares answered from a connection's statement cache, without a parse. */
+    public long getStatementHits() {
+        return statementHits;
+    }
+
+    public long getStatementMisses() {
+        return statementMisses;
+    }
+
+    /** Cached statements closed to make room for others. */
+    public long getStatementEvictions() {
+        return statementEvictions;
+    }
+
+    public double getStatementHitRate() {
+        long prepares = statementHits + statementMisses;
+        return prepares == 0 ? 0 : (double) statementHits / prepares;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d open (%d idle, %d active), %d borrows, acquire avg %.1f us max %.1f us, "
+                        + "%d created, %d evicted, %d failed validation, %d broken, %d timeouts, %d leaks; "
+                        + "statements %d hits, %d misses (%.0f%% hit rate), %d evicted",
+                open, idle, active, borrows, getAverageAcquireMicros(), getMaxAcquireMicros(),
+                created, evicted, validationFailures, broken, timeouts, leaks,
+                statementHits, statementMisses, getStatementHitRate() * 100, statementEvictions);
+    }
+}
@@ -0,0 +1,308 @@
+package com.g1rix.javalearning.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+ * Timings of every statement run through a {@link ConnectionPool}, kept
+ * per SQL text: how often it ran, how often it failed, the rows it touched
+ * and a latency histogram giving the median, 99th percentile and maximum.
+ *
+ * Recording takes no locks: the histogram has a fixed set of buckets, eight
+ * per power of two, each an atomic counter, so a percentile is accurate to
+ * within an eighth of its value whatever the range.
+ *
+ * An execution taking {@code db.slowQueryMs} or longer (default 500, -1 for
+ * never) is printed with its bind parameters. Their values are masked for
+ * statements that mention a password or one of the tables in
+ * {@code db.maskedTables} (comma separated, default LOGINSYSTEM), so a
+ * credential is not logged whatever the statement's columns are called.
+ * The figures are registered as an MXBean and printed every
+ * {@code db.stats.dumpMs} if that is set.
+ */
+public class QueryStats implements QueryStatsMXBean {
+
+    private static final int MAX_OPERATIONS = 1000;
+    private static final int SUB_BUCKETS = 8;
+    // values below 16 ns get a bucket each, then eight per power of two up to 2^63
+    private static final int BUCKETS = 16 + (63 - 4) * SUB_BUCKETS;
+    private static final int MAX_SHOWN_LENGTH = 100;
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+    private static final Set<String> MASKED_TABLES = new HashSet<>(Arrays.asList(
+            System.getProperty("db.maskedTables", "LOGINSYSTEM").toUpperCase().split("\\s*,\\s*")));
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    // where statements go once MAX_OPERATIONS distinct ones have been seen
+    private final Operation other = new Operation("(other statements)");
+    private volatile long slowQueryNanos;
+    private ObjectName name;
+
+    public QueryStats() {
+        this(Long.getLong("db.slowQueryMs", 500));
+    }
+
+    public QueryStats(long slowQueryMillis) {
+        setSlowQueryMillis(slowQueryMillis);
+    }
+
+    /** The figures for this SQL text, created on first use. */
+    Operation operation(String sql) {
+        Operation operation = operations.get(sql);
+        if (operation != null)
+            return operation;
+        if (operations.size() >= MAX_OPERATIONS)
+            return other;
+        return operations.computeIfAbsent(sql, Operation::new);
+    }
+
+    /**
+     * Records one execution.
+     *
+     * @param rows rows updated, or -1 if not known yet
+     * @param parameters the bind parameters, by index from 1; may be null
+     * @param batched rows in the batch executed, 0 for a single execution
+     */
+    void executed(Operation operation, long nanos, long rows, boolean failed, Object[] parameters, int batched) {
+        operation.record(nanos);
+        if (rows > 0)
+            operation.rows.add(rows);
+        if (failed)
+            operation.errors.increment();
+        long threshold = slowQueryNanos;
+        if (threshold >= 0 && nanos >= threshold) {
+            operation.slow.increment();
+            logSlow(operation, nanos, rows, failed, parameters, batched);
+        }
+    }
+
+    /** Adds the rows read from one of the operation's result sets. */
+    void rowsRead(Operation operation, long rows) {
+        operation.rows.add(rows);
+    }
+
+    @Override
+    public List<OperationStats> getOperations() {
+        List<OperationStats> list = new ArrayList<>();
+        for (Operation operation : operations.values())
+            list.add(operation.snapshot());
+        if (other.count.sum() > 0)
+            list.add(other.snapshot());
+        list.sort((a, b) -> Double.compare(b.getTotalMillis(), a.getTotalMillis()));
+        return list;
+    }
+
+    @Override
+    public long getExecutions() {
+        long total = other.count.sum();
+        for (Operation operation : operations.values())
+            total += operation.count.sum();
+        return total;
+    }
+
+    @Override
+    public long getErrors() {
+        long total = other.errors.sum();
+        for (Operation operation : operations.values())
+            total += operation.errors.sum();
+        return total;
+    }
+
+    @Override
+    public long getSlowQueries() {
+        long total = other.slow.sum();
+        for (Operation operation : operations.values())
+            total += operation.slow.sum();
+        return total;
+    }
+
+    @Override
+    public long getSlowQueryMillis() {
+        long nanos = slowQueryNanos;
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public void setSlowQueryMillis(long millis) {
+        slowQueryNanos = millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    // Counted in place: statements hold on to their Operation, so the map keeps its entries.
+    @Override
+    public void reset() {
+        for (Operation operation : operations.values())
+            operation.reset();
+        other.reset();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-50s %8s %7s %9s %9s %9s %9s%n", "Statement", "Count", "Errors", "Rows",
+                "p50 ms", "p99 ms", "Max ms"));
+        for (OperationStats s : getOperations()) {
+            out.append(String.format("%-50s %8d %7d %9d %9.3f %9.3f %9.3f%n", shorten(s.getSql(), 50),
+                    s.getCount(), s.getErrors(), s.getRows(), s.getP50Millis(), s.getP99Millis(),
+                    s.getMaxMillis()));
+        }
+        out.append(String.format("%d executions, %d failed, %d slow%n", getExecutions(), getErrors(),
+                getSlowQueries()));
+        return out.toString();
+    }
+
+    /** Registers the MXBean with the platform MBean server; a failure is reported and otherwise ignored. */
+    synchronized void register() {
+        try {
+            name = new ObjectName("com.g1rix.javalearning:type=QueryStats,name=pool-" + INSTANCES.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (Exception e) {
+            name = null;
+            e.printStackTrace();
+        }
+    }
+
+    synchronized void unregister() {
+        if (name == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        name = null;
+    }
+
+    private static void logSlow(Operation operation, long nanos, long rows, boolean failed, Object[] parameters,
+                                int batched) {
+        StringBuilder line = new StringBuilder(String.format("Slow query: %.1f ms", nanos / 1e6));
+        if (failed)
+            line.append(", failed");
+        else if (rows >= 0)
+            line.append(", ").append(rows).append(" rows");
+        line.append(": ").append(operation.sql);
+        if (batched > 0)
+            line.append(" (batch of ").append(batched).append(", last row shown)");
+        if (parameters != null) {
+            line.append(" [");
+            for (int i = 1; i < parameters.length; i++) {
+                if (i > 1)
+                    line.append(", ");
+                Object value = parameters[i];
+                if (operation.secret)
+                    line.append("***");
+                else if (value instanceof String)
+                    line.append('\'').append(shorten((String) value, MAX_SHOWN_LENGTH)).append('\'');
+                else
+                    line.append(value);
+            }
+            line.append(']');
+        }
+        System.out.println(line);
+    }
+
+    // Whether the statement's bind parameters must not be logged.
+    static boolean isSecret(String sql) {
+        String upper = sql.toUpperCase();
+        if (upper.contains("PASSWORD"))
+            return true;
+        for (String word : upper.split("[^A-Z0-9_$]+")) {
+            if (MASKED_TABLES.contains(word))
+                return true;
+        }
+        return false;
+    }
+
+    private static String shorten(String text, int length) {
+        text = text.replaceAll("\\s+", " ").trim();
+        return text.length() <= length ? text : text.substring(0, length - 3) + "...";
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < 16)
+            return (int) Math.max(nanos, 0);
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        return 16 + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    // The largest value that falls in the bucket.
+    static long upperBound(int bucket) {
+        if (bucket < 16)
+            return bucket;
+        int exponent = (bucket - 16) / SUB_BUCKETS + 4;
+        int sub = (bucket - 16) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1L) << (exponent - 3)) - 1;
+    }
+
+    /** The running figures for one SQL text. */
+    static final class Operation {
+        final String sql;
+        final boolean secret;
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder slow = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Operation(String sql) {
+            this.sql = sql;
+            this.secret = isSecret(sql);
+        }
+
+        void record(long nanos) {
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        OperationStats snapshot() {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            long max = maxNanos.get();
+            return new OperationStats(sql, count.sum(), errors.sum(), rows.sum(), slow.sum(), totalNanos.sum(),
+                    percentile(counts, total, 0.50, max), percentile(counts, total, 0.99, max), max);
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++)
+                buckets.set(i, 0);
+            count.reset();
+            totalNanos.reset();
+            errors.reset();
+            rows.reset();
+            slow.reset();
+            maxNanos.reset();
+        }
+
+        private static long percentile(long[] counts, long total, double quantile, long max) {
+            if (total == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+    }
+}
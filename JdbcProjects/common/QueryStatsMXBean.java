@@ -0,0 +1,27 @@
+package com.g1rix.javalearning.jdbc;
+
+import java.util.List;
+
+/** What {@link QueryStats} shows over JMX, under {@code com.g1rix.javalearning:type=QueryStats}. */
+public interface QueryStatsMXBean {
+
+    /** One entry per SQL statement run so far, slowest in total first. */
+    List<OperationStats> getOperations();
+
+    long getExecutions();
+
+    long getErrors();
+
+    long getSlowQueries();
+
+    /** Executions taking at least this long are logged; negative turns the log off. */
+    long getSlowQueryMillis();
+
+    void setSlowQueryMillis(long millis);
+
+    /** Starts every count and histogram again from zero. */
+    void reset();
+
+    /** The operations as a printable table. */
+    String dump();
+}
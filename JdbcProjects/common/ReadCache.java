@@ -0,0 +1,192 @@
+package com.g1rix.javalearning.jdbc;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-process read-through cache in front of a lookup query.
+ *
+ * A miss runs the loader and keeps its result for {@code db.cache.ttlMs}
+ * (default 30 s); empty results are kept too, so a lookup of a missing key
+ * is not repeated on every call. Writes made through this process must
+ * call {@link #invalidate} for the keys they touch; writes made elsewhere
+ * show up once the entry expires.
+ *
+ * The cache holds at most {@code db.cache.maxSize} entries (default 1000).
+ * When it is full, the least recently used entry only makes way for a key
+ * that has been asked for more often, going by a small count-min sketch of
+ * recent lookups. This keeps a burst of one-off lookups from pushing out
+ * the hot keys, as it would under plain LRU.
+ *
+ * A load that overlaps an invalidation of the same cache is returned to
+ * its caller but not kept, since it may have read the row before the write.
+ */
+public class ReadCache<K, V> {
+
+    /** Reads the value for a key from the database. */
+    public interface Loader<K, V> {
+        V load(K key) throws SQLException;
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long invalidations;
+
+    private long hits;
+    private long misses;
+    private long loadNanos;
+    private long maxLoadNanos;
+    private long evictions;
+    private long rejections;
+    private long expirations;
+
+    public ReadCache(String name) {
+        this(name, Integer.getInteger("db.cache.maxSize", 1000), Long.getLong("db.cache.ttlMs", 30_000L));
+    }
+
+    public ReadCache(String name, int maxSize, long ttlMillis) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Cache size must be positive");
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.sketch = new FrequencySketch(maxSize);
+    }
+
+    /** The cached value for the key, loading and caching it on a miss. */
+    public V get(K key, Loader<K, V> loader) throws SQLException {
+        long seen;
+        synchronized (this) {
+            sketch.increment(key);
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.loadedAt < ttlNanos) {
+                    hits++;
+                    return entry.value;
+                }
+                entries.remove(key);
+                expirations++;
+            }
+            misses++;
+            seen = invalidations;
+        }
+
+        long start = System.nanoTime();
+        V value = loader.load(key);
+        long elapsed = System.nanoTime() - start;
+
+        synchronized (this) {
+            loadNanos += elapsed;
+            maxLoadNanos = Math.max(maxLoadNanos, elapsed);
+            if (seen == invalidations)
+                put(key, new Entry<>(value, start));
+        }
+        return value;
+    }
+
+    private void put(K key, Entry<V> entry) {
+        if (!entries.containsKey(key) && entries.size() >= maxSize) {
+            Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            Map.Entry<K, Entry<V>> victim = eldest.next();
+            if (System.nanoTime() - victim.getValue().loadedAt >= ttlNanos) {
+                expirations++;
+            } else if (sketch.frequency(key) > sketch.frequency(victim.getKey())) {
+                evictions++;
+            } else {
+                rejections++;
+                return;
+            }
+            eldest.remove();
+        }
+        entries.put(key, entry);
+    }
+
+    /** Drops the key, so the next lookup reads the database again. */
+    public synchronized void invalidate(K key) {
+        invalidations++;
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations++;
+        entries.clear();
+    }
+
+    public synchronized CacheMetrics metrics() {
+        return new CacheMetrics(name, entries.size(), hits, misses, loadNanos, maxLoadNanos,
+                evictions, rejections, expirations);
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long loadedAt;
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Approximate lookup counts per key: four rows of 4-bit counters, each
+     * key counted in one slot per row and read as the smallest of the four.
+     * All counters are halved every ten lookups per slot of capacity, so
+     * keys that were hot a while ago fade out.
+     */
+    private static final class FrequencySketch {
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] counters = new byte[4][];
+        private final int mask;
+        private final int resetAfter;
+        private int additions;
+
+        FrequencySketch(int maxSize) {
+            int width = Integer.highestOneBit(Math.max(16, maxSize * 2) - 1) << 1;
+            for (int i = 0; i < counters.length; i++)
+                counters[i] = new byte[width];
+            this.mask = width - 1;
+            this.resetAfter = maxSize * 10;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            for (int i = 0; i < counters.length; i++) {
+                int slot = index(hash, i);
+                if (counters[i][slot] < MAX_COUNT)
+                    counters[i][slot]++;
+            }
+            if (++additions >= resetAfter) {
+                additions = 0;
+                for (byte[] row : counters) {
+                    for (int j = 0; j < row.length; j++)
+                        row[j] >>= 1;
+                }
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int min = MAX_COUNT;
+            for (int i = 0; i < counters.length; i++)
+                min = Math.min(min, counters[i][index(hash, i)]);
+            return min;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * (0x9E3779B1 + 2 * row);
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 17;
+            h *= 0xED5AD4BB;
+            return h ^ (h >>> 11);
+        }
+    }
+}
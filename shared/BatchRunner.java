@@ -0,0 +1,163 @@
+package com.g1rix.javalearning.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a script of commands without prompts, one command per line: a name
+ * followed by its arguments, separated by spaces. Arguments containing
+ * spaces can be double-quoted. Blank lines and lines starting with '#' are
+ * skipped. A bad line is reported with its line number and the script goes
+ * on. Output is printed as each command runs, followed by a timing summary
+ * per command.
+ */
+public class BatchRunner {
+
+    public interface Command {
+        void run(String[] args) throws Exception;
+    }
+
+    private final Map<String, Entry> commands = new LinkedHashMap<>();
+    private final PrintStream out;
+
+    public BatchRunner() {
+        this(System.out);
+    }
+
+    public BatchRunner(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @param usage shown when the argument count is wrong, e.g. {@code "<amount> [date]"}
+     */
+    public BatchRunner command(String name, String usage, int minArgs, int maxArgs, Command command) {
+        commands.put(name.toLowerCase(), new Entry(usage, minArgs, maxArgs, command));
+        return this;
+    }
+
+    /** Runs the script in {@code source}, a file path or "-" for stdin. */
+    public void run(String source) throws IOException {
+        if (source.equals("-")) {
+            run(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+            run(reader);
+        }
+    }
+
+    public void run(Reader reader) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader);
+        long start = System.nanoTime();
+        long lineNo = 0;
+        int failed = 0;
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            List<String> tokens = tokenize(line);
+            if (tokens.isEmpty() || tokens.get(0).startsWith("#"))
+                continue;
+
+            String name = tokens.get(0).toLowerCase();
+            Entry entry = commands.get(name);
+            String[] args = tokens.subList(1, tokens.size()).toArray(new String[0]);
+            if (entry == null) {
+                out.println("Line " + lineNo + ": Unknown command '" + name + "'");
+                failed++;
+                continue;
+            }
+            if (args.length < entry.minArgs || args.length > entry.maxArgs) {
+                out.println("Line " + lineNo + ": Usage: " + name + " " + entry.usage);
+                failed++;
+                continue;
+            }
+
+            long t0 = System.nanoTime();
+            try {
+                entry.command.run(args);
+            } catch (Exception e) {
+                out.println("Line " + lineNo + ": " + (e.getMessage() != null ? e.getMessage() : e));
+                failed++;
+            }
+            entry.record(System.nanoTime() - t0);
+        }
+
+        printSummary(System.nanoTime() - start, failed);
+    }
+
+    private void printSummary(long elapsedNanos, int failed) {
+        out.println();
+        out.printf("%-12s %8s %12s %10s %10s%n", "Command", "Count", "Total ms", "Avg ms", "Max ms");
+        long count = 0;
+        for (Map.Entry<String, Entry> e : commands.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.count == 0)
+                continue;
+            count += entry.count;
+            out.printf("%-12s %8d %12.2f %10.3f %10.3f%n", e.getKey(), entry.count,
+                    entry.totalNanos / 1e6, entry.totalNanos / 1e6 / entry.count, entry.maxNanos / 1e6);
+        }
+        out.printf("%d commands, %d failed, %.2f ms%n", count, failed, elapsedNanos / 1e6);
+    }
+
+    private static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean quoted = false;
+        boolean inToken = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                inToken = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (inToken)
+                    tokens.add(token.toString());
+                token.setLength(0);
+                inToken = false;
+            } else {
+                token.append(c);
+                inToken = true;
+            }
+        }
+        if (inToken)
+            tokens.add(token.toString());
+        return tokens;
+    }
+
+    private static final class Entry {
+        final String usage;
+        final int minArgs;
+        final int maxArgs;
+        final Command command;
+        long count;
+        long totalNanos;
+        long maxNanos;
+
+        Entry(String usage, int minArgs, int maxArgs, Command command) {
+            this.usage = usage;
+            this.minArgs = minArgs;
+            this.maxArgs = maxArgs;
+            this.command = command;
+        }
+
+        void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.g1rix.javalearning.util;
+
+import java.util.Arrays;
+
+/**
+ * Streaming quantiles of positive values with a guaranteed relative error.
+ *
+ * Values are counted in logarithmic buckets: bucket {@code i} holds the
+ * values in (g^(i-1), g^i] with g = (1 + a) / (1 - a), and a quantile is
+ * answered with the bucket's midpoint. The answer is therefore within a
+ * factor a of the exact value at the requested rank: with the default
+ * a = 1%, a p99 of 100000 is reported as something in 99000..101000.
+ *
+ * Adding, removing and merging only touch bucket counts, so values can be
+ * taken back out again (unlike t-digest or KLL) and sketches from different
+ * groups, such as departments or archived months, can be combined. Memory
+ * depends only on the spread of the values: about log(max / min) / (2a)
+ * buckets, some 1,100 for 1 to Integer.MAX_VALUE at 1%, however many
+ * values are counted.
+ *
+ * Values of zero or less are counted together and reported as 0.
+ */
+public class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+
+    private long[] counts = new long[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1))
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public void add(double value) {
+        if (value <= 0) {
+            zeroCount++;
+        } else {
+            int i = index(value);
+            grow(i);
+            counts[i - offset]++;
+        }
+        count++;
+    }
+
+    /**
+     * Takes one occurrence of {@code value} back out. Returns false if there
+     * was none in its bucket.
+     */
+    public boolean remove(double value) {
+        if (value <= 0) {
+            if (zeroCount == 0)
+                return false;
+            zeroCount--;
+        } else {
+            int i = index(value) - offset;
+            if (i < 0 || i >= counts.length || counts[i] == 0)
+                return false;
+            counts[i]--;
+        }
+        count--;
+        return true;
+    }
+
+    /** Adds every value counted in {@code other}, which must have the same accuracy. */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy)
+            throw new IllegalArgumentException("Sketches have different accuracy");
+        if (other.counts.length > 0) {
+            grow(other.offset);
+            grow(other.offset + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++)
+                counts[other.offset + i - offset] += other.counts[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        zeroCount = 0;
+        count = 0;
+    }
+
+    /**
+     * The value at quantile {@code q} (0.5 for the median) by nearest rank,
+     * that is the ceil(q * n)-th smallest, within the relative accuracy; NaN
+     * if the sketch is empty.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1)
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        if (count == 0)
+            return Double.NaN;
+
+        long rank = Math.max(0, (long) Math.ceil(q * count) - 1);
+        long seen = zeroCount;
+        if (seen > rank)
+            return 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank)
+                return 2 * Math.pow(gamma, i + offset) / (gamma + 1);
+        }
+        return 2 * Math.pow(gamma, offset + counts.length - 1) / (gamma + 1);
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    private void grow(int index) {
+        if (counts.length == 0) {
+            counts = new long[8];
+            offset = index - 4;
+            return;
+        }
+        if (index >= offset && index < offset + counts.length)
+            return;
+
+        int low = Math.min(offset, index);
+        int high = Math.max(offset + counts.length - 1, index);
+        // leave room in the direction of growth so a drifting range does not copy every time
+        int size = Math.max(high - low + 1, counts.length * 2);
+        int newOffset = index < offset ? high - size + 1 : low;
+        long[] grown = new long[size];
+        System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+}